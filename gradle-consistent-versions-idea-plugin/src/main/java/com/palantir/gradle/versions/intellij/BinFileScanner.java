@@ -0,0 +1,182 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Finds runs of printable characters in a binary file, such as Gradle's {@code resource-at-url.bin}.
+ *
+ * <p>The file is read in large chunks and every byte is treated as an ISO-8859-1 character. A run ends at the next
+ * ISO control character. When only resource URLs are requested, runs are searched for the {@code https://} prefix
+ * and matched against the {@code .pom}/{@code .jar} suffixes on the raw bytes, so no String is created for anything
+ * else. The prefix is looked for anywhere in a run, as Gradle writes each URL straight after its length, which is
+ * a printable character for most lengths.
+ *
+ * <p>A scan can start part way into a file and reports the offset to resume from, which lets a file that has grown
+ * since it was last scanned be read from where the previous scan left off. A scan can also be limited to a range of
+ * the file, so a large file can be split between several threads: a run belongs to the range it starts in, so a scan
+ * skips a run already open at the start of its range and reads past the end of its range to finish its last run.
+ *
+ * <p>A cancellation check runs before every chunk, so a scan can be aborted after at most one more chunk.
+ */
+final class BinFileScanner {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final byte[] URL_PREFIX = "https://".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] POM_SUFFIX = ".pom".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] JAR_SUFFIX = ".jar".getBytes(StandardCharsets.ISO_8859_1);
+    private static final boolean[] IS_CONTROL = new boolean[256];
+
+    static {
+        for (int i = 0; i < IS_CONTROL.length; i++) {
+            IS_CONTROL[i] = Character.isISOControl((char) i);
+        }
+    }
+
+    private final boolean resourceUrlsOnly;
+    private final Consumer<String> consumer;
+    private final Runnable checkCanceled;
+    private byte[] run = new byte[256];
+    private int runLength;
+    private boolean rejected;
+    private long runStart;
+
+    private BinFileScanner(boolean resourceUrlsOnly, Consumer<String> consumer, Runnable checkCanceled) {
+        this.resourceUrlsOnly = resourceUrlsOnly;
+        this.consumer = consumer;
+        this.checkCanceled = checkCanceled;
+    }
+
+    /** The String form of the check made on the raw bytes when only resource URLs are requested. */
+    static boolean isResourceUrl(String url) {
+        return url.startsWith("https://") && (url.endsWith(".pom") || url.endsWith(".jar"));
+    }
+
+    /** Passes every run of printable characters in the file to the consumer. */
+    static void scanStrings(Path file, Consumer<String> consumer, Runnable checkCanceled) throws IOException {
+        new BinFileScanner(false, consumer, checkCanceled).scan(file, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Passes every {@code https://} URL ending in {@code .pom} or {@code .jar} found after {@code fromOffset} in the
+     * file to the consumer.
+     *
+     * @return the offset a later scan should resume from, which is the start of the run still open at the end of the
+     *         file, or the end of the file if there is none
+     */
+    static long scanResourceUrls(Path file, long fromOffset, Consumer<String> consumer) throws IOException {
+        return scanResourceUrls(file, fromOffset, Long.MAX_VALUE, consumer, () -> {});
+    }
+
+    /**
+     * Like {@link #scanResourceUrls(Path, long, Consumer)}, but only passes on the URLs that start before
+     * {@code toOffset}, and runs {@code checkCanceled} before every chunk so it can abort the scan by throwing.
+     *
+     * @return the offset a later scan should resume from, or the start of the first run at or after
+     *         {@code toOffset} if the scan stopped there
+     */
+    static long scanResourceUrls(
+            Path file, long fromOffset, long toOffset, Consumer<String> consumer, Runnable checkCanceled)
+            throws IOException {
+        return new BinFileScanner(true, consumer, checkCanceled).scan(file, fromOffset, toOffset);
+    }
+
+    private long scan(Path file, long fromOffset, long toOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            runStart = fromOffset;
+            if (fromOffset > 0) {
+                ByteBuffer previous = ByteBuffer.allocate(1);
+                // A run that is already open belongs to whoever scanned the bytes before fromOffset
+                rejected = channel.read(previous, fromOffset - 1) == 1 && !IS_CONTROL[previous.get(0) & 0xff];
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            long position = fromOffset;
+            channel.position(fromOffset);
+            while (channel.read(buffer) != -1) {
+                checkCanceled.run();
+                buffer.flip();
+                int stoppedAt = scanChunk(buffer.array(), buffer.limit(), position, toOffset);
+                if (stoppedAt != -1) {
+                    return position + stoppedAt;
+                }
+                position += buffer.limit();
+                buffer.clear();
+            }
+
+            // The start of the run still open at the end of the file, which is the end itself if there is none. A run
+            // that does not look like a URL yet is read again too, as Gradle may still be writing the URL it ends in.
+            long resumeOffset = runStart;
+            endRun();
+            return resumeOffset;
+        }
+    }
+
+    /** Returns the index in the chunk the scan stopped at, or -1 if the scan should continue with the next chunk. */
+    private int scanChunk(byte[] bytes, int limit, long chunkOffset, long toOffset) {
+        for (int i = 0; i < limit; i++) {
+            byte value = bytes[i];
+            if (IS_CONTROL[value & 0xff]) {
+                endRun();
+                runStart = chunkOffset + i + 1;
+                if (runStart >= toOffset) {
+                    return i + 1;
+                }
+            } else if (!rejected) {
+                append(value);
+            }
+        }
+        return -1;
+    }
+
+    private void append(byte value) {
+        if (resourceUrlsOnly && runLength < URL_PREFIX.length && value != URL_PREFIX[runLength]) {
+            // The prefix has no repeated start, so a mismatch can only begin a new match at this byte
+            runLength = 0;
+            if (value != URL_PREFIX[0]) {
+                return;
+            }
+        }
+        if (runLength == run.length) {
+            run = Arrays.copyOf(run, run.length * 2);
+        }
+        run[runLength++] = value;
+    }
+
+    private void endRun() {
+        if (runLength > 0 && !rejected && (!resourceUrlsOnly || isResourceUrl())) {
+            consumer.accept(new String(run, 0, runLength, StandardCharsets.ISO_8859_1));
+        }
+        runLength = 0;
+        rejected = false;
+    }
+
+    private boolean isResourceUrl() {
+        return runLength >= URL_PREFIX.length + POM_SUFFIX.length && (endsWith(POM_SUFFIX) || endsWith(JAR_SUFFIX));
+    }
+
+    private boolean endsWith(byte[] suffix) {
+        return Arrays.equals(run, runLength - suffix.length, runLength, suffix, 0, suffix.length);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the {@code metadata-*} folders of the Gradle cache for changes to {@code resource-at-url.bin}, so
+ * dependencies downloaded outside the IDE, for example by a command line build, are picked up without a project
+ * refresh.
+ *
+ * <p>The watch service is polled on the given scheduler instead of blocking a thread. Gradle writes the bin file many
+ * times while resolving, so a change is only reported once the file has been quiet for the debounce period.
+ */
+final class BinFileWatcher {
+    private static final Logger log = LoggerFactory.getLogger(BinFileWatcher.class);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500);
+
+    private final Path gradleCachePath;
+    private final Duration debounce;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final ScheduledFuture<?> polling;
+    private boolean registered;
+    private boolean changed;
+    private long lastChangeNanos;
+
+    BinFileWatcher(Path gradleCachePath, Duration debounce, ScheduledExecutorService scheduler, Runnable onChange)
+            throws IOException {
+        this.gradleCachePath = gradleCachePath;
+        this.debounce = debounce;
+        this.onChange = onChange;
+        this.watchService = gradleCachePath.getFileSystem().newWatchService();
+        this.polling = scheduler.scheduleWithFixedDelay(
+                this::poll, POLL_INTERVAL.toMillis(), POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void poll() {
+        if (polling.isCancelled()) {
+            return;
+        }
+
+        try {
+            if (!registered) {
+                registerFolders();
+            }
+
+            WatchKey key;
+            while ((key = watchService.poll()) != null) {
+                handleEvents(key);
+                key.reset();
+            }
+
+            if (changed && System.nanoTime() - lastChangeNanos >= debounce.toNanos()) {
+                changed = false;
+                onChange.run();
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("No Gradle cache at {} to watch yet", gradleCachePath);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to watch the Gradle cache for changes", e);
+        }
+    }
+
+    /** Watches the cache for new metadata folders, and every existing metadata folder for bin file changes. */
+    private void registerFolders() throws IOException {
+        gradleCachePath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        List<Path> metadataFolders;
+        try (Stream<Path> folders = Files.list(gradleCachePath)) {
+            metadataFolders = folders.filter(BinFileWatcher::isMetadataFolder).collect(Collectors.toList());
+        }
+        for (Path folder : metadataFolders) {
+            registerMetadataFolder(folder);
+        }
+        registered = true;
+    }
+
+    private void registerMetadataFolder(Path folder) throws IOException {
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private void handleEvents(WatchKey key) throws IOException {
+        Path folder = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                markChanged();
+                continue;
+            }
+
+            Path name = (Path) event.context();
+            if (folder.equals(gradleCachePath) && isMetadataFolder(name)) {
+                // A new Gradle version started a metadata folder of its own
+                registerMetadataFolder(folder.resolve(name));
+                markChanged();
+            } else if (name.toString().equals("resource-at-url.bin")) {
+                markChanged();
+            }
+        }
+    }
+
+    private void markChanged() {
+        changed = true;
+        lastChangeNanos = System.nanoTime();
+    }
+
+    private static boolean isMetadataFolder(Path path) {
+        return path.getFileName().toString().startsWith("metadata-");
+    }
+
+    synchronized void close() {
+        polling.cancel(false);
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug("Failed to close Gradle cache watch service", e);
+        }
+    }
+}
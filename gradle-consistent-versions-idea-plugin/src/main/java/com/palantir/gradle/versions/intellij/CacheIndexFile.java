@@ -0,0 +1,110 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.palantir.gradle.versions.intellij.GradleCacheExplorer.BinFileState;
+import com.palantir.gradle.versions.intellij.GradleCacheExplorer.Snapshot;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists a {@link Snapshot} of the Gradle cache, so the index is available straight away after the IDE restarts
+ * and only the bin files that changed in the meantime need to be scanned.
+ *
+ * <p>The file holds a header, the fingerprint of every bin file the snapshot was built from and the trie of every
+ * cache root in pre-order. It is replaced atomically, so a crash while writing leaves the previous file intact.
+ */
+final class CacheIndexFile {
+    private static final Logger log = LoggerFactory.getLogger(CacheIndexFile.class);
+    private static final int MAGIC = 0x47435649;
+    private static final int FORMAT_VERSION = 4;
+
+    static Optional<Snapshot> read(Path indexFile) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                log.debug("Ignoring Gradle cache index with unknown format");
+                return Optional.empty();
+            }
+
+            int binFileCount = input.readInt();
+            Map<Path, BinFileState> binFiles = new HashMap<>();
+            for (int i = 0; i < binFileCount; i++) {
+                binFiles.put(
+                        Paths.get(input.readUTF()),
+                        ImmutableBinFileState.of(input.readLong(), input.readLong(), input.readLong()));
+            }
+
+            int rootCount = input.readInt();
+            Map<Path, DependencyTrie> rootUrls = new HashMap<>();
+            for (int i = 0; i < rootCount; i++) {
+                rootUrls.put(Paths.get(input.readUTF()), DependencyTrie.readFrom(input));
+            }
+
+            return Optional.of(new Snapshot(rootUrls, binFiles));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read Gradle cache index", e);
+            return Optional.empty();
+        }
+    }
+
+    static void write(Path indexFile, Snapshot snapshot) {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tempFile = Files.createTempFile(
+                    indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+
+                output.writeInt(snapshot.binFiles().size());
+                for (Map.Entry<Path, BinFileState> entry : snapshot.binFiles().entrySet()) {
+                    output.writeUTF(entry.getKey().toString());
+                    output.writeLong(entry.getValue().size());
+                    output.writeLong(entry.getValue().lastModified());
+                    output.writeLong(entry.getValue().scannedOffset());
+                }
+
+                output.writeInt(snapshot.rootUrls().size());
+                for (Map.Entry<Path, DependencyTrie> entry : snapshot.rootUrls().entrySet()) {
+                    output.writeUTF(entry.getKey().toString());
+                    entry.getValue().writeTo(output);
+                }
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write Gradle cache index", e);
+        }
+    }
+
+    private CacheIndexFile() {}
+}
@@ -16,18 +16,25 @@
 
 package com.palantir.gradle.versions.intellij;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import org.immutables.value.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +42,19 @@ public final class ContentsUtil {
     private static final Logger log = LoggerFactory.getLogger(ContentsUtil.class);
 
     public static Optional<String> fetchPageContents(URL pageUrl) {
+        return fetchPage(pageUrl, Collections.emptyMap()).flatMap(response -> {
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                log.debug("Fetching {} returned status {}", pageUrl, response.statusCode());
+            }
+            return response.body();
+        });
+    }
+
+    /**
+     * Sends a GET request with the given headers and returns the response, whatever its status code, or nothing if
+     * the request failed or was cancelled. The body is only read for a {@code 200 OK}.
+     */
+    static Optional<PageResponse> fetchPage(URL pageUrl, Map<String, String> requestHeaders) {
         ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
 
         if (indicator == null) {
@@ -42,11 +62,11 @@ public final class ContentsUtil {
         }
 
         try {
-            Future<String> future =
-                    ApplicationManager.getApplication().executeOnPooledThread(fetchContentTask(pageUrl, indicator));
-            String content =
+            Future<PageResponse> future = ApplicationManager.getApplication()
+                    .executeOnPooledThread(() -> fetch(pageUrl, requestHeaders, indicator::isCanceled));
+            PageResponse response =
                     com.intellij.openapi.application.ex.ApplicationUtil.runWithCheckCanceled(future::get, indicator);
-            return Optional.ofNullable(content);
+            return Optional.ofNullable(response);
         } catch (InterruptedException | ProcessCanceledException e) {
             log.debug("Fetch operation was cancelled", e);
         } catch (Exception e) {
@@ -55,32 +75,60 @@ public final class ContentsUtil {
         return Optional.empty();
     }
 
-    private static Callable<String> fetchContentTask(URL pageUrl, ProgressIndicator indicator) {
-        return () -> {
-            HttpURLConnection connection = (HttpURLConnection) pageUrl.openConnection();
+    @VisibleForTesting
+    static PageResponse fetch(URL pageUrl, Map<String, String> requestHeaders, BooleanSupplier isCanceled)
+            throws IOException, InterruptedException {
+        HttpURLConnection connection = (HttpURLConnection) pageUrl.openConnection();
+        try {
             connection.setRequestMethod("GET");
+            requestHeaders.forEach(connection::setRequestProperty);
 
-            if (connection.getResponseCode() != 200) {
-                connection.disconnect();
-                throw new ProcessCanceledException();
+            int statusCode = connection.getResponseCode();
+            Map<String, String> headers = new HashMap<>();
+            connection.getHeaderFields().forEach((name, values) -> {
+                if (name != null && !values.isEmpty()) {
+                    headers.put(name.toLowerCase(Locale.ROOT), values.get(0));
+                }
+            });
+
+            if (statusCode != HttpURLConnection.HTTP_OK) {
+                return ImmutablePageResponse.of(statusCode, Optional.empty(), headers);
             }
 
-            BufferedReader in =
-                    new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder result = new StringBuilder();
-            String inputLine;
+            try (BufferedReader in =
+                    new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                StringBuilder result = new StringBuilder();
+                String inputLine;
 
-            while ((inputLine = in.readLine()) != null) {
-                if (indicator.isCanceled()) {
-                    throw new InterruptedException("Fetch cancelled");
+                while ((inputLine = in.readLine()) != null) {
+                    if (isCanceled.getAsBoolean()) {
+                        throw new InterruptedException("Fetch cancelled");
+                    }
+                    result.append(inputLine);
                 }
-                result.append(inputLine);
+                return ImmutablePageResponse.of(statusCode, Optional.of(result.toString()), headers);
             }
-
-            in.close();
+        } finally {
             connection.disconnect();
-            return result.toString();
-        };
+        }
+    }
+
+    /** The status code, headers and, for a {@code 200 OK}, the body of a response. */
+    @Value.Immutable
+    interface PageResponse {
+        @Value.Parameter
+        int statusCode();
+
+        @Value.Parameter
+        Optional<String> body();
+
+        /** The response headers by lower case name, with only the first value of a header that was sent repeatedly. */
+        @Value.Parameter
+        Map<String, String> headers();
+
+        default Optional<String> header(String name) {
+            return Optional.ofNullable(headers().get(name.toLowerCase(Locale.ROOT)));
+        }
     }
 
     private ContentsUtil() {}
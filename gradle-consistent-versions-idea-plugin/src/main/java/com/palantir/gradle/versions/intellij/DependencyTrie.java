@@ -0,0 +1,261 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A prefix tree over the path segments of cached resource URLs, truncated at the artifact name.
+ *
+ * <p>For the maven2 layout URL "https://example.com/org/example/project/1.0/project-1.0.jar" the segments
+ * "https:", "example.com", "org", "example" and "project" are inserted and the "project" node is marked as an
+ * artifact. The version and file name are dropped, so every version of an artifact shares a single node.
+ *
+ * <p>The trie lives as long as the IDE, so it is kept compact: every node holds its child segments in a sorted array
+ * next to a matching array of children, rather than a hash map, and segments are interned so a name like "core" or
+ * "commons" that appears in many groups is only stored once.
+ *
+ * <p>A trie is only mutated while it is being built and must not be changed once it has been published.
+ */
+final class DependencyTrie {
+    private static final Splitter PATH_SPLITTER = Splitter.on('/').omitEmptyStrings();
+    private static final Interner<String> SEGMENTS = Interners.newWeakInterner();
+    private static final String[] NO_SEGMENTS = new String[0];
+    private static final DependencyTrie[] NO_CHILDREN = new DependencyTrie[0];
+
+    private String[] segments = NO_SEGMENTS;
+    private DependencyTrie[] children = NO_CHILDREN;
+    private boolean artifact;
+
+    static DependencyTrie fromUrls(Collection<String> urls) {
+        DependencyTrie trie = new DependencyTrie();
+        urls.forEach(trie::insertUrl);
+        return trie;
+    }
+
+    static List<String> segments(String url) {
+        return PATH_SPLITTER.splitToList(url);
+    }
+
+    void insertUrl(String url) {
+        List<String> segments = segments(url);
+        // scheme, host, artifact, version and file name are the least a maven2 layout URL can have
+        if (segments.size() < 5) {
+            return;
+        }
+
+        DependencyTrie node = this;
+        for (String segment : segments.subList(0, segments.size() - 2)) {
+            node = node.getOrAddChild(segment);
+        }
+        node.artifact = true;
+    }
+
+    /** Returns a deep copy of this trie, which can be modified without affecting the original. */
+    DependencyTrie copy() {
+        DependencyTrie copy = new DependencyTrie();
+        copy.artifact = artifact;
+        copy.segments = segments.clone();
+        copy.children = new DependencyTrie[children.length];
+        for (int i = 0; i < children.length; i++) {
+            copy.children[i] = children[i].copy();
+        }
+        return copy;
+    }
+
+    /**
+     * Projects the URL trie onto the given repositories, returning a trie that starts at the first group segment.
+     * Artifacts found under more than one repository are merged into a single node.
+     */
+    DependencyTrie project(Set<String> repoUrls) {
+        DependencyTrie projection = new DependencyTrie();
+        for (String repoUrl : repoUrls) {
+            find(segments(repoUrl)).ifPresent(projection::merge);
+        }
+        return projection;
+    }
+
+    /** Returns a trie holding the artifacts of all the given tries, which is the trie itself if there is only one. */
+    static DependencyTrie union(Collection<DependencyTrie> tries) {
+        if (tries.size() == 1) {
+            return tries.iterator().next();
+        }
+        DependencyTrie union = new DependencyTrie();
+        tries.forEach(union::merge);
+        return union;
+    }
+
+    private void merge(DependencyTrie other) {
+        artifact |= other.artifact;
+        for (int i = 0; i < other.children.length; i++) {
+            getOrAddChild(other.segments[i]).merge(other.children[i]);
+        }
+    }
+
+    /** Writes the trie in pre-order with the children of every node in sorted order, as {@link #readFrom} expects. */
+    void writeTo(DataOutput output) throws IOException {
+        output.writeBoolean(artifact);
+        output.writeInt(children.length);
+        for (int i = 0; i < children.length; i++) {
+            output.writeUTF(segments[i]);
+            children[i].writeTo(output);
+        }
+    }
+
+    static DependencyTrie readFrom(DataInput input) throws IOException {
+        DependencyTrie trie = new DependencyTrie();
+        trie.artifact = input.readBoolean();
+        int childCount = input.readInt();
+        if (childCount > 0) {
+            trie.segments = new String[childCount];
+            trie.children = new DependencyTrie[childCount];
+            for (int i = 0; i < childCount; i++) {
+                trie.segments[i] = SEGMENTS.intern(input.readUTF());
+                trie.children[i] = readFrom(input);
+            }
+        }
+        return trie;
+    }
+
+    Optional<DependencyTrie> find(List<String> path) {
+        DependencyTrie node = this;
+        for (String segment : path) {
+            int index = Arrays.binarySearch(node.segments, segment);
+            if (index < 0) {
+                return Optional.empty();
+            }
+            node = node.children[index];
+        }
+        return Optional.of(node);
+    }
+
+    private DependencyTrie getOrAddChild(String segment) {
+        int index = Arrays.binarySearch(segments, segment);
+        if (index >= 0) {
+            return children[index];
+        }
+
+        // Arrays are sized exactly, as most nodes never change again once the trie has been built
+        int insertAt = -index - 1;
+        DependencyTrie child = new DependencyTrie();
+        segments = insert(segments, insertAt, SEGMENTS.intern(segment));
+        children = insert(children, insertAt, child);
+        return child;
+    }
+
+    private static <T> T[] insert(T[] array, int index, T value) {
+        T[] copy = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        copy[index] = value;
+        return copy;
+    }
+
+    /**
+     * Visits every artifact below this node whose group has at least one segment, in the format "group:artifact".
+     * The group is made up of the given {@code groupParts} followed by the segments between this node and the
+     * artifact. If {@code directChildrenOnly} is set, only the artifacts directly below this node are visited.
+     */
+    void forEachArtifact(List<String> groupParts, boolean directChildrenOnly, Consumer<String> consumer) {
+        Deque<String> path = new ArrayDeque<>(groupParts);
+        for (int i = 0; i < children.length; i++) {
+            children[i].visit(segments[i], path, !directChildrenOnly, consumer);
+        }
+    }
+
+    /**
+     * Visits every artifact whose coordinate in the format "group:artifact" matches the glob, where a star matches any
+     * run of characters, dots included, the way versions.props entries such as "com.fasterxml.jackson.*:jackson-*"
+     * do. A glob without a colon matches every artifact of the groups it matches.
+     *
+     * <p>Only the part of the trie below the literal prefix of the glob is walked: the whole segments of the prefix are
+     * looked up by binary search, and a partial segment selects the range of children that start with it. The glob
+     * above never looks outside "com.fasterxml.jackson", and "com.google.guava:gu*" only at the artifacts of its group.
+     */
+    void forEachGlobMatch(String glob, Runnable checkCanceled, Consumer<String> consumer) {
+        String coordinateGlob = glob.contains(":") ? glob : glob + ":*";
+        Pattern pattern = Pattern.compile(Arrays.stream(coordinateGlob.split("\\*", -1))
+                .map(Pattern::quote)
+                .collect(Collectors.joining(".*")));
+        Consumer<String> matches = coordinate -> {
+            checkCanceled.run();
+            if (pattern.matcher(coordinate).matches()) {
+                consumer.accept(coordinate);
+            }
+        };
+
+        int star = coordinateGlob.indexOf('*');
+        String literalPrefix = star == -1 ? coordinateGlob : coordinateGlob.substring(0, star);
+        int colon = literalPrefix.indexOf(':');
+        if (colon != -1) {
+            // The whole group is literal, so only its own artifacts can match
+            List<String> group = Arrays.asList(literalPrefix.substring(0, colon).split("\\."));
+            find(group)
+                    .ifPresent(node -> node.forEachChildStartingWith(
+                            literalPrefix.substring(colon + 1),
+                            (segment, child) -> child.visit(segment, new ArrayDeque<>(group), false, matches)));
+            return;
+        }
+
+        int lastDot = literalPrefix.lastIndexOf('.');
+        List<String> wholeSegments = lastDot == -1
+                ? List.of()
+                : Arrays.asList(literalPrefix.substring(0, lastDot).split("\\."));
+        find(wholeSegments)
+                .ifPresent(node -> node.forEachChildStartingWith(
+                        literalPrefix.substring(lastDot + 1),
+                        (segment, child) -> child.visit(segment, new ArrayDeque<>(wholeSegments), true, matches)));
+    }
+
+    private void forEachChildStartingWith(String prefix, BiConsumer<String, DependencyTrie> consumer) {
+        int index = Arrays.binarySearch(segments, prefix);
+        for (int i = index < 0 ? -index - 1 : index; i < segments.length && segments[i].startsWith(prefix); i++) {
+            consumer.accept(segments[i], children[i]);
+        }
+    }
+
+    private void visit(String segment, Deque<String> group, boolean recurse, Consumer<String> consumer) {
+        if (artifact && !group.isEmpty()) {
+            consumer.accept(String.join(".", group) + ":" + segment);
+        }
+
+        if (!recurse) {
+            return;
+        }
+
+        group.addLast(segment);
+        for (int i = 0; i < children.length; i++) {
+            children[i].visit(segments[i], group, true, consumer);
+        }
+        group.removeLast();
+    }
+}
@@ -21,15 +21,28 @@ import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
 import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.codeInsight.completion.PrioritizedLookupElement;
+import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.patterns.PlatformPatterns;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.util.ProcessingContext;
 import com.palantir.gradle.versions.intellij.psi.VersionPropsTypes;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import one.util.streamex.EntryStream;
+import one.util.streamex.StreamEx;
 
 public class FolderCompletionContributor extends CompletionContributor {
+    private static final String COMPLETION_LIMIT_KEY = "gradle.consistent.versions.completion.limit";
 
     private final RepositoryExplorer repositoryExplorer = new RepositoryExplorer();
 
@@ -49,11 +62,32 @@ public class FolderCompletionContributor extends CompletionContributor {
                 DependencyGroup group = DependencyGroup.groupFromParameters(parameters);
 
                 Project project = parameters.getOriginalFile().getProject();
+                String query = resultSet.getPrefixMatcher().getPrefix();
+                CompletionResultSet fuzzyResultSet = withFuzzyMatching(resultSet);
 
-                RepositoryLoader.loadRepositories(project).stream()
-                        .flatMap(url -> repositoryExplorer.getGroupPartOrPackageName(group, url).stream())
-                        .map(LookupElementBuilder::create)
-                        .forEach(resultSet::addElement);
+                // The repositories are listed at once, and each listing is added as soon as it arrives, leaving out
+                // the folders another repository already listed. The listings stop once the limit has been added.
+                int limit = completionLimit();
+                Set<GroupPartOrPackageName> added = new HashSet<>();
+                RepositoryFanOut.forEachResult(
+                        RepositoryLoader.loadRepositories(project),
+                        url -> repositoryExplorer.getGroupPartOrPackageName(group, url),
+                        RepositoryFanOut.deadline(),
+                        folders -> {
+                            List<GroupPartOrPackageName> ranked = StreamEx.of(folders)
+                                    .remove(added::contains)
+                                    .mapToEntry(folder -> FuzzyMatcher.score(query, folder.toString()))
+                                    .filterValues(score -> score != FuzzyMatcher.NO_MATCH)
+                                    .reverseSorted(Map.Entry.comparingByValue())
+                                    .keys()
+                                    .toList();
+                            int addedNow = addRanked(
+                                    StreamEx.of(ranked).<LookupElement>map(LookupElementBuilder::create),
+                                    limit - added.size(),
+                                    fuzzyResultSet);
+                            added.addAll(ranked.subList(0, addedNow));
+                            return added.size() < limit && !fuzzyResultSet.isStopped();
+                        });
             }
         });
     }
@@ -67,19 +101,63 @@ public class FolderCompletionContributor extends CompletionContributor {
                 DependencyGroup group = DependencyGroup.groupFromParameters(parameters);
 
                 Project project = parameters.getOriginalFile().getProject();
+                Set<String> repositories = RepositoryLoader.loadRepositories(project);
+                boolean isPackageName = elementType == VersionPropsTypes.NAME_KEY;
 
-                GradleCacheExplorer.getInstance()
-                        .getCompletions(
-                                RepositoryLoader.loadRepositories(project),
-                                group,
-                                elementType == VersionPropsTypes.NAME_KEY)
-                        .stream()
-                        .map(suggestion -> LookupElementBuilder.create(GroupPartOrPackageName.of(suggestion)))
-                        .forEach(resultSet::addElement);
+                GradleCacheExplorer explorer = GradleCacheExplorer.getInstance();
+                String query = resultSet.getPrefixMatcher().getPrefix();
+                CompletionResultSet fuzzyResultSet = withFuzzyMatching(resultSet);
+                int limit = completionLimit();
+                List<String> suggestions =
+                        explorer.getFuzzyCompletions(repositories, group, isPackageName, query, limit);
+                addRanked(toLookupElements(suggestions), limit, fuzzyResultSet);
+
+                // Until the index has warmed up the suggestions come from a stale snapshot, so rather than wait for
+                // the scan, which would also hold up the remote suggestions, ask again as soon as the user types
+                if (!explorer.isWarmedUp()) {
+                    resultSet.restartCompletionOnAnyPrefixChange();
+                }
+            }
+
+            /** The ranked suggestions, keeping their rank in the popup. */
+            private Stream<LookupElement> toLookupElements(List<String> suggestions) {
+                return EntryStream.of(suggestions)
+                        .mapKeyValue((rank, suggestion) -> PrioritizedLookupElement.withPriority(
+                                LookupElementBuilder.create(GroupPartOrPackageName.of(suggestion)),
+                                suggestions.size() - rank));
             }
         });
     }
 
+    /**
+     * Adds the elements in order until {@code limit} have been added or the popup needs no more, checking for
+     * cancellation in between.
+     *
+     * @return the number of elements added
+     */
+    private static int addRanked(Stream<LookupElement> elements, int limit, CompletionResultSet resultSet) {
+        int added = 0;
+        Iterator<LookupElement> iterator = elements.iterator();
+        while (added < limit && !resultSet.isStopped() && iterator.hasNext()) {
+            ProgressManager.checkCanceled();
+            resultSet.addElement(iterator.next());
+            added++;
+        }
+        return added;
+    }
+
+    private static int completionLimit() {
+        return Registry.intValue(COMPLETION_LIMIT_KEY);
+    }
+
+    /**
+     * Matches the typed text anywhere in a suggestion as a subsequence, such as "jackdatabind" in "jackson-databind".
+     */
+    private static CompletionResultSet withFuzzyMatching(CompletionResultSet resultSet) {
+        String prefix = resultSet.getPrefixMatcher().getPrefix();
+        return resultSet.withPrefixMatcher(new FuzzyPrefixMatcher(prefix));
+    }
+
     @Override
     public final boolean invokeAutoPopup(PsiElement position, char typeChar) {
         return typeChar == ':';
@@ -0,0 +1,247 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Matches queries against a corpus of completions such as "com.fasterxml.jackson.core:jackson-databind", where the
+ * query only has to be a subsequence of the completion. Separators are ignored in the query, so "jackdatabind",
+ * "jackson-databind" and "fasterxml:databind" all match the example above.
+ *
+ * <p>Matches are ranked by a score that rewards characters matched at the start of a word, where a word starts after
+ * a separator or at a camel hump, and runs of consecutive characters, and penalises the characters skipped in between.
+ * Ties go to the more popular completion, and then to the shorter one.
+ *
+ * <p>Every completion is indexed by the set of characters it contains, so most of the corpus is ruled out by a single
+ * bitwise check before it is matched character by character. The completions are matched in a pre-computed lower case
+ * encoding that also marks where words start, so matching never has to look at the strings themselves.
+ *
+ * <p>Indexing and matching both run a cancellation check every {@value #CANCELLATION_CHECK_INTERVAL} completions, so a
+ * completion the user has typed past stops using the CPU straight away.
+ */
+final class FuzzyMatcher {
+    static final int NO_MATCH = Integer.MIN_VALUE;
+
+    private static final int MATCH_SCORE = 16;
+    private static final int WORD_START_BONUS = 8;
+    private static final int CONSECUTIVE_BONUS = 4;
+    private static final int GAP_PENALTY = 1;
+    private static final int WORD_START = 0x80;
+    private static final int CHARACTER = 0x7f;
+    private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+
+    private final String[] completions;
+    private final byte[] encodedText;
+    private final int[] offsets;
+    private final long[] signatures;
+
+    FuzzyMatcher(Collection<String> corpus, ToDoubleFunction<String> popularity, Runnable checkCanceled) {
+        // Sorting up front means an empty query, and any tie in score, is already in the final order
+        Map<String, Double> popularities =
+                corpus.stream().collect(Collectors.toMap(Function.identity(), popularity::applyAsDouble));
+        completions = corpus.stream()
+                .sorted(Comparator.<String, Double>comparing(popularities::get, Comparator.reverseOrder())
+                        .thenComparingInt(String::length)
+                        .thenComparing(Comparator.naturalOrder()))
+                .toArray(String[]::new);
+
+        // The encoded completions are laid out back to back in one array, which is much quicker to scan than
+        // following a reference to every string
+        offsets = new int[completions.length + 1];
+        signatures = new long[completions.length];
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (int i = 0; i < completions.length; i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0) {
+                checkCanceled.run();
+            }
+            byte[] encoded = encode(completions[i]);
+            text.writeBytes(encoded);
+            offsets[i + 1] = offsets[i] + encoded.length;
+            signatures[i] = signature(encoded);
+        }
+        encodedText = text.toByteArray();
+    }
+
+    /**
+     * Returns the best {@code limit} completions that match the query, best match first.
+     *
+     * @param checkCanceled throws to abort the match, for example {@code ProgressManager::checkCanceled}
+     */
+    List<String> match(String query, int limit, Runnable checkCanceled) {
+        byte[] normalizedQuery = normalize(query);
+        if (normalizedQuery.length == 0) {
+            return Arrays.asList(completions).subList(0, Math.min(limit, completions.length));
+        }
+
+        // Each match is packed into a long that sorts by descending score and then by position in the corpus, so
+        // ranking is a sort of primitives. Once the buffer holds twice the limit it is cut back to the best matches so
+        // far, so a query that matches most of the corpus never sorts more than a few times the limit at once.
+        long querySignature = signature(normalizedQuery);
+        long[] matches = new long[16];
+        int matchCount = 0;
+        for (int i = 0; i < completions.length; i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0) {
+                checkCanceled.run();
+            }
+            if ((signatures[i] & querySignature) != querySignature) {
+                continue;
+            }
+            int score = score(normalizedQuery, encodedText, offsets[i], offsets[i + 1]);
+            if (score == NO_MATCH) {
+                continue;
+            }
+            if (matchCount == matches.length) {
+                if (matchCount >= 2L * limit) {
+                    Arrays.sort(matches, 0, matchCount);
+                    matchCount = limit;
+                } else {
+                    matches = Arrays.copyOf(matches, matchCount * 2);
+                }
+            }
+            matches[matchCount++] = ((long) -score << 32) | i;
+        }
+
+        Arrays.sort(matches, 0, matchCount);
+        int resultCount = Math.min(limit, matchCount);
+        List<String> ranked = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            ranked.add(completions[(int) matches[i]]);
+        }
+        return ranked;
+    }
+
+    /** Scores how well the query matches the candidate, or returns {@link #NO_MATCH} if it does not match at all. */
+    static int score(String query, String candidate) {
+        byte[] normalizedQuery = normalize(query);
+        byte[] encoded = encode(candidate);
+        return normalizedQuery.length == 0 ? 0 : score(normalizedQuery, encoded, 0, encoded.length);
+    }
+
+    /** Scores the query against the candidate {@link #encode encoded} in {@code text} from {@code from} to {@code to}. */
+    private static int score(byte[] query, byte[] text, int from, int to) {
+        // Find where the first complete match ends, then walk back from there to the latest possible start, which
+        // gives the tightest window the query matches in
+        int end = from;
+        for (int q = 0; q < query.length; end++) {
+            if (end == to) {
+                return NO_MATCH;
+            }
+            if ((text[end] & CHARACTER) == query[q]) {
+                q++;
+            }
+        }
+
+        int start = end;
+        for (int q = query.length - 1; q >= 0; start--) {
+            if ((text[start - 1] & CHARACTER) == query[q]) {
+                q--;
+            }
+        }
+
+        int score = 0;
+        int previousMatch = -1;
+        int q = 0;
+        for (int i = start; i < end && q < query.length; i++) {
+            if ((text[i] & CHARACTER) != query[q]) {
+                continue;
+            }
+            score += MATCH_SCORE;
+            if ((text[i] & WORD_START) != 0) {
+                score += WORD_START_BONUS;
+            }
+            if (previousMatch != -1) {
+                score += previousMatch == i - 1 ? CONSECUTIVE_BONUS : -GAP_PENALTY * (i - previousMatch - 1);
+            }
+            previousMatch = i;
+            q++;
+        }
+        return score;
+    }
+
+    private static boolean isWordStart(String candidate, int index) {
+        if (index == 0) {
+            return true;
+        }
+        char previous = candidate.charAt(index - 1);
+        char current = candidate.charAt(index);
+        return isSeparator(previous)
+                || (Character.isLowerCase(previous) && Character.isUpperCase(current))
+                || (Character.isLetter(previous) && Character.isDigit(current));
+    }
+
+    private static byte[] normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char character = query.charAt(i);
+            if (!isSeparator(character) && !Character.isWhitespace(character)) {
+                normalized.append(character);
+            }
+        }
+        byte[] encoded = new byte[normalized.length()];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = toLowerCaseAscii(normalized.charAt(i));
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes every character as its lower case ASCII value, with the top bit set if it starts a word. Maven
+     * coordinates are ASCII, so anything else can safely be replaced by '?'.
+     */
+    private static byte[] encode(String text) {
+        byte[] encoded = new byte[text.length()];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = (byte) (toLowerCaseAscii(text.charAt(i)) | (isWordStart(text, i) ? WORD_START : 0));
+        }
+        return encoded;
+    }
+
+    private static byte toLowerCaseAscii(char character) {
+        char lowerCase = Character.toLowerCase(character);
+        return (byte) (lowerCase < WORD_START ? lowerCase : '?');
+    }
+
+    private static boolean isSeparator(char character) {
+        return character == '.' || character == ':' || character == '-' || character == '_' || character == '*';
+    }
+
+    /** One bit for each of a-z and 0-9 in the encoded text, and a shared bit for any other character. */
+    private static long signature(byte[] text) {
+        long signature = 0;
+        for (byte value : text) {
+            char character = (char) (value & CHARACTER);
+            if (character >= 'a' && character <= 'z') {
+                signature |= 1L << (character - 'a');
+            } else if (character >= '0' && character <= '9') {
+                signature |= 1L << (26 + character - '0');
+            } else if (!isSeparator(character)) {
+                signature |= 1L << 36;
+            }
+        }
+        return signature;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.intellij.codeInsight.completion.PrefixMatcher;
+
+/** Lets the completion popup keep the lookup elements that {@link FuzzyMatcher} matches, rather than only prefixes. */
+final class FuzzyPrefixMatcher extends PrefixMatcher {
+
+    FuzzyPrefixMatcher(String prefix) {
+        super(prefix);
+    }
+
+    @Override
+    public boolean prefixMatches(String name) {
+        return FuzzyMatcher.score(getPrefix(), name) != FuzzyMatcher.NO_MATCH;
+    }
+
+    @Override
+    public PrefixMatcher cloneWithPrefix(String prefix) {
+        return new FuzzyPrefixMatcher(prefix);
+    }
+
+    @Override
+    public int matchingDegree(String string) {
+        return FuzzyMatcher.score(getPrefix(), string);
+    }
+}
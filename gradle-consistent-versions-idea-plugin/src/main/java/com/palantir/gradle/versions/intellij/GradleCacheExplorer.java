@@ -16,63 +16,386 @@
 
 package com.palantir.gradle.versions.intellij;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
-import java.io.BufferedInputStream;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.palantir.gradle.versions.intellij.ResourceAtUrlDecoder.UnknownLayoutException;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import one.util.streamex.StreamEx;
+import org.immutables.value.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class GradleCacheExplorer {
+public class GradleCacheExplorer implements Disposable {
 
     private static final Logger log = LoggerFactory.getLogger(GradleCacheExplorer.class);
-    private static final String GRADLE_CACHE_PATH = System.getProperty("user.home") + "/.gradle/caches/modules-2/";
-    private final AtomicReference<Set<String>> cache = new AtomicReference<>(Collections.emptySet());
+    private static final String INDEX_FILE_PATH = "gradle-consistent-versions/gradle-cache-index.bin";
+    private static final long SCAN_RANGE_SIZE = 16 * 1024 * 1024;
+    private static final Duration WATCH_DEBOUNCE = Duration.ofSeconds(2);
+    private final Supplier<Set<Path>> cacheRoots;
+    private final Optional<Path> indexFile;
+    private final Snapshot initialSnapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+    private final AtomicReference<Snapshot> cache = new AtomicReference<>(initialSnapshot);
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    private final Executor scanExecutor;
+    private final CompletableFuture<Void> warmUp;
+    private final Runnable checkCanceled;
+    private final boolean watchCacheRoots;
+    private final Map<Path, BinFileWatcher> watchers = new HashMap<>();
+    private ForkJoinPool scanPool;
+    private volatile boolean disposed;
 
     GradleCacheExplorer() {
-        loadCache();
+        this(
+                GradleCacheRoots::discover,
+                Optional.of(PathManager.getSystemDir().resolve(INDEX_FILE_PATH)),
+                AppExecutorUtil.createBoundedApplicationPoolExecutor("Gradle cache index", 1),
+                true);
+    }
+
+    @VisibleForTesting
+    GradleCacheExplorer(Path gradleCachePath, Optional<Path> indexFile, Executor scanExecutor) {
+        this(() -> Set.of(gradleCachePath), indexFile, scanExecutor, false);
+    }
+
+    /**
+     * Builds the index on the given executor and serves an empty index until then. The snapshot persisted in
+     * {@code indexFile}, if there is one, is published first, so only the bin files that changed since it was
+     * written are scanned. The executor must run its tasks one at a time, as every scan of the cache runs on it.
+     *
+     * <p>The cache roots are looked up again on every load, so a Gradle user home configured after the IDE started is
+     * picked up by the next load. With {@code watchCacheRoots} set, every root in use is also watched for changes.
+     */
+    @VisibleForTesting
+    GradleCacheExplorer(
+            Supplier<Set<Path>> cacheRoots, Optional<Path> indexFile, Executor scanExecutor, boolean watchCacheRoots) {
+        this.cacheRoots = cacheRoots;
+        this.indexFile = indexFile;
+        this.scanExecutor = scanExecutor;
+        this.checkCanceled = ProgressManager::checkCanceled;
+        this.watchCacheRoots = watchCacheRoots;
+        this.warmUp = CompletableFuture.runAsync(this::warmUp, scanExecutor);
     }
 
     @VisibleForTesting
     GradleCacheExplorer(Set<String> newCache) {
-        cache.set(newCache);
+        this(newCache, ProgressManager::checkCanceled);
+    }
+
+    /** Serves completions from the given URLs, running {@code checkCanceled} while matching instead of the IDE's. */
+    @VisibleForTesting
+    GradleCacheExplorer(Set<String> newCache, Runnable checkCanceled) {
+        this.cacheRoots = Collections::emptySet;
+        this.indexFile = Optional.empty();
+        this.scanExecutor = MoreExecutors.directExecutor();
+        this.checkCanceled = checkCanceled;
+        this.watchCacheRoots = false;
+        this.warmUp = CompletableFuture.completedFuture(null);
+        cache.set(new Snapshot(Map.of(Paths.get(""), DependencyTrie.fromUrls(newCache)), Collections.emptyMap()));
+    }
+
+    private void warmUp() {
+        indexFile.flatMap(CacheIndexFile::read).ifPresent(persisted -> cache.compareAndSet(initialSnapshot, persisted));
+        loadCache();
     }
 
+    /**
+     * Whether the index has finished warming up. Until then completions are served from the snapshot persisted by the
+     * last session, if there is one, and the next completion picks up the index once it is ready.
+     */
+    public final boolean isWarmedUp() {
+        return warmUp.isDone();
+    }
+
+    /**
+     * Schedules a {@link #loadCache()} in the background and returns straight away. Requests made before the scheduled
+     * load starts are merged into it, and requests made while a load is running are merged into a single follow-up
+     * load, so a burst of requests never causes more than two scans.
+     */
+    public final void requestReload() {
+        if (reloadQueued.compareAndSet(false, true)) {
+            scanExecutor.execute(() -> {
+                reloadQueued.set(false);
+                loadCache();
+            });
+        }
+    }
+
+    @Override
+    public final void dispose() {
+        disposed = true;
+        synchronized (watchers) {
+            watchers.values().forEach(BinFileWatcher::close);
+            watchers.clear();
+        }
+        synchronized (this) {
+            if (scanPool != null) {
+                scanPool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * The pool bin files are scanned on, created by the first scan that needs it, as an explorer serving a fixed set of
+     * URLs never scans.
+     */
+    private synchronized ForkJoinPool scanPool() {
+        if (disposed) {
+            throw new ProcessCanceledException();
+        }
+        if (scanPool == null) {
+            scanPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return scanPool;
+    }
+
+    /** Starts watching the cache roots that are new since the last load, and stops watching those no longer in use. */
+    private void watch(Set<Path> roots) {
+        synchronized (watchers) {
+            if (disposed) {
+                return;
+            }
+            for (Path root : Set.copyOf(watchers.keySet())) {
+                if (!roots.contains(root)) {
+                    watchers.remove(root).close();
+                }
+            }
+            for (Path root : roots) {
+                if (!watchers.containsKey(root)) {
+                    try {
+                        watchers.put(
+                                root,
+                                new BinFileWatcher(
+                                        root,
+                                        WATCH_DEBOUNCE,
+                                        AppExecutorUtil.getAppScheduledExecutorService(),
+                                        this::requestReload));
+                    } catch (IOException e) {
+                        log.warn(
+                                "Failed to watch the Gradle cache at {}, it will only be reloaded on Gradle project "
+                                        + "refresh",
+                                root,
+                                e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings the cache up to date with the bin files on disk. Only files that changed since the last load are read:
+     * files that grew are read from where the previous scan stopped and merged into the existing index. The index of
+     * a cache root is only rebuilt from scratch when one of its bin files disappeared or shrank, as entries may have
+     * been removed, and the other roots keep theirs.
+     *
+     * <p>A scan is not tied to any one completion, as every completion shares the index, so it is only cancelled when
+     * the explorer is disposed. The cache then keeps whatever it held before the scan started.
+     */
     public final void loadCache() {
-        cache.set(extractStrings());
+        try {
+            Set<Path> roots = cacheRoots.get();
+            if (watchCacheRoots) {
+                watch(roots);
+            }
+            Snapshot previous = cache.get();
+            Snapshot updated = extractStrings(previous, roots);
+            if (updated != previous) {
+                indexFile.ifPresent(file -> CacheIndexFile.write(file, updated));
+            }
+            cache.set(updated.withLocalVersions(scanLocalVersions(previous, updated, roots)));
+        } catch (ProcessCanceledException e) {
+            log.debug("Scan of the Gradle cache was cancelled");
+        }
+    }
+
+    /**
+     * Lists the downloaded versions again only in the cache roots where they may have changed: those whose bin files
+     * changed, as Gradle records every download in them, and those whose {@code files-2.1} folder was modified, as a
+     * cache cleanup removes groups from it. The other roots keep the versions listed by the last load.
+     */
+    private Map<Path, RootVersions> scanLocalVersions(Snapshot previous, Snapshot updated, Set<Path> roots) {
+        Map<Path, RootVersions> rootVersions = new HashMap<>();
+        for (Path root : roots) {
+            Path filesCachePath = root.resolve("files-2.1");
+            long lastModified = lastModified(filesCachePath);
+            RootVersions last = previous.rootVersions().get(root);
+            if (last != null
+                    && last.lastModified() == lastModified
+                    && previous.rootUrls().get(root) == updated.rootUrls().get(root)) {
+                rootVersions.put(root, last);
+            } else {
+                rootVersions.put(
+                        root,
+                        ImmutableRootVersions.of(
+                                lastModified, LocalVersionIndex.scan(filesCachePath, this::checkScanCanceled)));
+            }
+        }
+        return rootVersions;
+    }
+
+    /** The modification time of the folder, or 0 if it does not exist or can not be read. */
+    private static long lastModified(Path folder) {
+        try {
+            return Files.getLastModifiedTime(folder).toMillis();
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            log.debug("Failed to read the modification time of {}", folder, e);
+            return 0;
+        }
+    }
+
+    private void checkScanCanceled() {
+        if (disposed) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    /** The versions of the artifact that Gradle has already downloaded, which can be used without network access. */
+    public final Set<String> getCachedVersions(DependencyGroup group, DependencyName dependencyName) {
+        return cache.get().localVersions().versions(String.join(".", group.parts()), dependencyName.name());
     }
 
     public final Set<String> getCompletions(Set<String> repoUrls, DependencyGroup input, boolean isPackageName) {
+        return getCompletions(cache.get(), repoUrls, input, isPackageName);
+    }
+
+    /**
+     * Like {@link #getCompletions(Set, DependencyGroup, boolean)}, but only returns the best {@code limit} completions
+     * the query is a subsequence of, best match first. Equally good matches are ordered by how popular the artifact is
+     * in the local Gradle cache. The completions are indexed once per group, so typing further characters only re-runs
+     * the match.
+     *
+     * @throws ProcessCanceledException as soon as the IDE cancels the completion this is computed for
+     */
+    public final List<String> getFuzzyCompletions(
+            Set<String> repoUrls, DependencyGroup input, boolean isPackageName, String query, int limit) {
         Stopwatch stopWatch = Stopwatch.createStarted();
+        Snapshot snapshot = cache.get();
+        FuzzyMatcher matcher = snapshot.matcher(
+                CompletionKey.of(repoUrls, input, isPackageName),
+                key -> new FuzzyMatcher(
+                        getCompletions(snapshot, repoUrls, input, isPackageName),
+                        completion -> popularity(snapshot.localVersions(), input, completion),
+                        checkCanceled));
+        List<String> matches = matcher.match(query, limit, checkCanceled);
+        log.debug("Fuzzy matching time: {} ms", stopWatch.elapsed().toMillis());
+        return matches;
+    }
 
-        String parsedInput = String.join(".", input.parts());
+    /**
+     * The popularity of the artifact a completion refers to, where the completion is relative to the group typed so
+     * far, or of the most popular artifact in the group for a star.
+     */
+    private static double popularity(LocalVersionIndex localVersions, DependencyGroup input, String completion) {
+        String parsedInput =
+                input.parts().stream().filter(part -> !part.isEmpty()).collect(Collectors.joining("."));
+        String coordinate =
+                parsedInput.isEmpty() ? completion : parsedInput + (completion.contains(":") ? "." : ":") + completion;
 
-        Set<String> results = cache.get().stream()
-                .map(url -> extractGroupAndArtifactFromUrl(repoUrls, url))
-                .flatMap(Optional::stream)
-                .collect(Collectors.toSet());
+        int colonIndex = coordinate.indexOf(':');
+        if (colonIndex == -1) {
+            return 0;
+        }
+        String group = coordinate.substring(0, colonIndex);
+        String artifact = coordinate.substring(colonIndex + 1);
+        return artifact.equals("*") ? localVersions.groupPopularity(group) : localVersions.popularity(group, artifact);
+    }
+
+    /**
+     * The cached artifacts, in the format "group:artifact", that a versions.props entry such as
+     * "com.fasterxml.jackson.*:jackson-*" applies to. Only the part of the index below the literal prefix of the glob
+     * is searched.
+     */
+    public final Set<String> getGlobMatches(Set<String> repoUrls, String glob) {
+        return getGlobMatches(cache.get(), repoUrls, glob);
+    }
 
-        Set<String> resultsWithStarsIncluded =
-                results.stream().flatMap(GradleCacheExplorer::includeStars).collect(Collectors.toSet());
+    /** The number of cached artifacts a versions.props entry such as "com.fasterxml.jackson.*:jackson-*" applies to. */
+    public final int countGlobMatches(Set<String> repoUrls, String glob) {
+        return getGlobMatches(repoUrls, glob).size();
+    }
+
+    private Set<String> getGlobMatches(Snapshot snapshot, Set<String> repoUrls, String glob) {
+        Set<String> matches = new HashSet<>();
+        snapshot.projection(repoUrls).forEachGlobMatch(glob, checkCanceled, matches::add);
+        return matches;
+    }
+
+    private Set<String> getCompletions(
+            Snapshot snapshot, Set<String> repoUrls, DependencyGroup input, boolean isPackageName) {
+        Stopwatch stopWatch = Stopwatch.createStarted();
+
+        List<String> groupParts =
+                input.parts().stream().filter(part -> !part.isEmpty()).collect(Collectors.toList());
+        String parsedInput = String.join(".", groupParts);
+
+        if (parsedInput.contains("*")) {
+            // A star may stand for any number of group parts, so only the artifacts the glob covers are completed
+            if (!isPackageName) {
+                return Collections.emptySet();
+            }
+            Set<String> artifacts = StreamEx.of(getGlobMatches(snapshot, repoUrls, parsedInput))
+                    .map(coordinate -> coordinate.substring(coordinate.indexOf(':') + 1))
+                    .toCollection(HashSet::new);
+            if (!artifacts.isEmpty()) {
+                artifacts.add("*");
+            }
+            return artifacts;
+        }
+
+        boolean directChildrenOnly = isPackageName && !groupParts.isEmpty();
+
+        Set<String> resultsWithStarsIncluded = new HashSet<>();
+        snapshot.projection(repoUrls)
+                .find(groupParts)
+                .ifPresent(node -> node.forEachArtifact(groupParts, directChildrenOnly, artifact -> {
+                    checkCanceled.run();
+                    includeStars(artifact).forEach(resultsWithStarsIncluded::add);
+                }));
 
         if (parsedInput.isEmpty()) {
             return resultsWithStarsIncluded;
         }
+        checkCanceled.run();
 
         Set<String> filteredResults = StreamEx.of(resultsWithStarsIncluded)
-                .filter(result -> result.startsWith(parsedInput))
                 .map(result -> result.substring(parsedInput.length() + 1))
                 .chain(stream -> {
                     if (isPackageName) {
@@ -97,92 +420,351 @@ public class GradleCacheExplorer {
         return Stream.of(result);
     }
 
-    private Set<String> extractStrings() {
-        try (Stream<Path> allFolders = Files.list(Paths.get(GRADLE_CACHE_PATH))) {
+    /**
+     * Scans the bin files that changed in every cache root, all on the same pool, and merges the roots into a single
+     * index, so an artifact downloaded into more than one root is only suggested once.
+     */
+    private Snapshot extractStrings(Snapshot previous, Set<Path> roots) {
+        Map<Path, DependencyTrie> rootUrls = new HashMap<>();
+        Map<Path, BinFileState> binFiles = new HashMap<>();
+        Map<Path, BinFileState> changed = new HashMap<>();
+        Map<Path, Long> fromOffsets = new HashMap<>();
+        int changedRoots = 0;
+        for (Path root : roots) {
+            DependencyTrie lastUrls = previous.rootUrls().get(root);
+            Map<Path, BinFileState> last = Maps.filterKeys(
+                    previous.binFiles(), binFile -> rootOf(binFile).equals(root));
+            Optional<Map<Path, BinFileState>> current = listBinFiles(root);
+            if (current.isEmpty()) {
+                // Keep what the previous scan found, rather than dropping the root
+                if (lastUrls != null) {
+                    rootUrls.put(root, lastUrls);
+                    binFiles.putAll(last);
+                }
+                continue;
+            }
 
-            Stream<Path> metadataFolders =
-                    allFolders.filter(path -> path.getFileName().toString().startsWith("metadata-"));
+            boolean rebuild = lastUrls == null
+                    || last.entrySet().stream()
+                            .anyMatch(entry -> !current.get().containsKey(entry.getKey())
+                                    || current.get().get(entry.getKey()).size()
+                                            < entry.getValue().size());
+            Map<Path, BinFileState> scanned = rebuild ? Collections.emptyMap() : last;
+            Map<Path, BinFileState> changedInRoot = Maps.filterEntries(
+                    current.get(), entry -> !isUnchanged(scanned.get(entry.getKey()), entry.getValue()));
+            binFiles.putAll(scanned);
+            if (changedInRoot.isEmpty() && !rebuild) {
+                rootUrls.put(root, lastUrls);
+                continue;
+            }
+
+            changedRoots++;
+            rootUrls.put(root, rebuild ? new DependencyTrie() : lastUrls.copy());
+            changedInRoot.forEach((binFile, state) -> {
+                BinFileState lastState = scanned.get(binFile);
+                changed.put(binFile, state);
+                fromOffsets.put(
+                        binFile, lastState != null && state.size() > lastState.size() ? lastState.scannedOffset() : 0L);
+            });
+        }
+        if (changedRoots == 0 && rootUrls.keySet().equals(previous.rootUrls().keySet())) {
+            return previous;
+        }
+
+        Map<Path, Set<String>> urls = new ConcurrentHashMap<>();
+        Map<Path, Long> resumeOffsets = extractResourceUrlsInParallel(
+                scanPool(),
+                fromOffsets,
+                SCAN_RANGE_SIZE,
+                (binFile, url) -> urls.computeIfAbsent(binFile, key -> ConcurrentHashMap.newKeySet())
+                        .add(url),
+                this::checkScanCanceled);
+        checkScanCanceled();
+        urls.forEach((binFile, binFileUrls) -> binFileUrls.forEach(rootUrls.get(rootOf(binFile))::insertUrl));
 
-            return metadataFolders
+        resumeOffsets.forEach((binFile, scannedOffset) -> {
+            BinFileState state = changed.get(binFile);
+            binFiles.put(binFile, ImmutableBinFileState.of(state.size(), state.lastModified(), scannedOffset));
+        });
+
+        log.debug("Scanned {} bin files in {} of {} cache roots", changed.size(), changedRoots, roots.size());
+        return new Snapshot(rootUrls, binFiles);
+    }
+
+    /** The bin files in the cache root, or empty if it could not be listed. A root that does not exist has none. */
+    private static Optional<Map<Path, BinFileState>> listBinFiles(Path root) {
+        Map<Path, BinFileState> binFiles = new HashMap<>();
+        try (Stream<Path> allFolders = Files.list(root)) {
+            allFolders
+                    .filter(path -> path.getFileName().toString().startsWith("metadata-"))
                     .map(metadataFolder -> metadataFolder.resolve("resource-at-url.bin"))
                     .filter(Files::exists)
-                    .flatMap(this::extractStringsFromBinFile)
-                    .filter(this::isValidResourceUrl)
-                    .collect(Collectors.toSet());
+                    .forEach(binFile -> readState(binFile).ifPresent(state -> binFiles.put(binFile, state)));
+        } catch (NoSuchFileException e) {
+            return Optional.of(binFiles);
         } catch (IOException e) {
             log.error("Failed to list metadata folders", e);
-            return Collections.emptySet();
+            return Optional.empty();
         }
+        return Optional.of(binFiles);
+    }
+
+    /** The cache root a {@code <root>/metadata-*}{@code /resource-at-url.bin} file belongs to. */
+    private static Path rootOf(Path binFile) {
+        return binFile.getParent().getParent();
     }
 
-    final boolean isValidResourceUrl(String url) {
-        return url.startsWith("https://") && (url.endsWith(".pom") || url.endsWith(".jar"));
+    private static boolean isUnchanged(BinFileState last, BinFileState state) {
+        return last != null && last.size() == state.size() && last.lastModified() == state.lastModified();
     }
 
-    final Stream<String> extractStringsFromBinFile(Path binFile) {
-        Set<String> result = new HashSet<>();
-        try (BufferedInputStream bis = new BufferedInputStream(Files.newInputStream(binFile))) {
-            StringBuilder currentString = new StringBuilder();
-            int byteValue;
+    private static Optional<BinFileState> readState(Path binFile) {
+        try {
+            return Optional.of(ImmutableBinFileState.of(
+                    Files.size(binFile), Files.getLastModifiedTime(binFile).toMillis(), 0));
+        } catch (IOException e) {
+            log.error("Failed to read attributes of bin file", e);
+            return Optional.empty();
+        }
+    }
 
-            while ((byteValue = bis.read()) != -1) {
-                char charValue = (char) byteValue;
-                if (!Character.isISOControl(charValue)) {
-                    currentString.append(charValue);
-                    continue;
+    /**
+     * Scans the bin files from the given offsets on the fork-join pool, splitting files into ranges of
+     * {@code rangeSize} bytes so a single large file is also read by several threads. Files the
+     * {@link ResourceAtUrlDecoder} knows the layout of are decoded whole instead, and only scanned if decoding fails.
+     *
+     * @param pool runs the scan, and is left running for the next one as its idle threads exit by themselves
+     * @param consumer receives each resource URL found along with the bin file it was found in, and must be thread
+     *     safe
+     * @param checkCanceled is run regularly by every thread and aborts the whole scan if it throws
+     * @return the offset to resume from for each bin file that was scanned successfully
+     */
+    @VisibleForTesting
+    static Map<Path, Long> extractResourceUrlsInParallel(
+            ForkJoinPool pool,
+            Map<Path, Long> fromOffsets,
+            long rangeSize,
+            BiConsumer<Path, String> consumer,
+            Runnable checkCanceled) {
+        List<BinFileRange> ranges = new ArrayList<>();
+        fromOffsets.forEach((binFile, fromOffset) -> {
+            if (ResourceAtUrlDecoder.supports(binFile)) {
+                // Decoded as a whole, as blocks can only be found by reading the file from the start of one
+                ranges.add(ImmutableBinFileRange.of(binFile, fromOffset, Long.MAX_VALUE));
+                return;
+            }
+            long size = fileSize(binFile);
+            long start = fromOffset;
+            while (start + rangeSize < size) {
+                ranges.add(ImmutableBinFileRange.of(binFile, start, start + rangeSize));
+                start += rangeSize;
+            }
+            ranges.add(ImmutableBinFileRange.of(binFile, start, Long.MAX_VALUE));
+        });
+
+        try {
+            Map<BinFileRange, Optional<Long>> results = pool.submit(() -> ranges.parallelStream()
+                            .collect(Collectors.toMap(
+                                    Function.identity(),
+                                    range -> extractResourceUrlsFromBinFile(range, consumer, checkCanceled))))
+                    .get();
+
+            Map<Path, Long> resumeOffsets = new HashMap<>();
+            results.forEach((range, resumeOffset) -> {
+                if (range.toOffset() == Long.MAX_VALUE) {
+                    resumeOffset.ifPresent(offset -> resumeOffsets.put(range.binFile(), offset));
                 }
-                if (!currentString.isEmpty()) {
-                    result.add(currentString.toString());
-                    currentString.setLength(0);
+            });
+            results.forEach((range, resumeOffset) -> {
+                if (resumeOffset.isEmpty()) {
+                    resumeOffsets.remove(range.binFile());
                 }
+            });
+            return resumeOffsets;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.debug("Scan of bin files was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProcessCanceledException) {
+                throw (ProcessCanceledException) e.getCause();
             }
+            log.error("Failed to scan bin files", e);
+        } catch (RejectedExecutionException e) {
+            // The pool is only shut down once the explorer is disposed
+            throw new ProcessCanceledException(e);
+        }
+        return Collections.emptyMap();
+    }
 
-            if (!currentString.isEmpty()) {
-                result.add(currentString.toString());
+    private static Optional<Long> extractResourceUrlsFromBinFile(
+            BinFileRange range, BiConsumer<Path, String> binFileConsumer, Runnable checkCanceled) {
+        Consumer<String> consumer = url -> binFileConsumer.accept(range.binFile(), url);
+        if (range.toOffset() == Long.MAX_VALUE && ResourceAtUrlDecoder.supports(range.binFile())) {
+            try {
+                return Optional.of(ResourceAtUrlDecoder.decodeResourceUrls(
+                        range.binFile(), range.fromOffset(), consumer, checkCanceled));
+            } catch (UnknownLayoutException e) {
+                log.debug("Falling back to scanning bin file for resource URLs", e);
+            } catch (IOException e) {
+                log.error("Failed to decode bin file", e);
+                return Optional.empty();
             }
+        }
+        try {
+            return Optional.of(BinFileScanner.scanResourceUrls(
+                    range.binFile(), range.fromOffset(), range.toOffset(), consumer, checkCanceled));
         } catch (IOException e) {
             log.error("Failed to extract strings from bin file", e);
+            return Optional.empty();
+        }
+    }
+
+    private static long fileSize(Path binFile) {
+        try {
+            return Files.size(binFile);
+        } catch (IOException e) {
+            // Scanned as a single range, which reports the failure
+            return 0;
         }
-        return result.stream();
     }
 
     /**
-     * Extracts the group and artifact identifiers from a given maven2 layout URL.
-     *
-     * <p>The method removes the base project URL from the input if it matches any in a predefined list,
-     * then converts the remaining path to the format "group:artifact".
-     *
-     * <p>Example: For the URL "http://example.com/org/example/project/1.0/project-1.0.jar"
-     * and "http://example.com/" in the list of projectUrls, it returns "org.example.project:project".
-     *
-     * @param url the URL to process
-     * @return an {@link Optional} containing a string in the format "group:artifact" if extraction is successful,
-     *         or {@link Optional#empty()} if no matching project URL is found or the URL does not have the expected structure.
+     * An immutable view of the Gradle cache. Projections onto a set of repositories are computed on first use and
+     * kept until the snapshot is replaced by the next {@link #loadCache()}.
      */
-    Optional<String> extractGroupAndArtifactFromUrl(Set<String> repoUrls, String url) {
-        return repoUrls.stream().filter(url::startsWith).findFirst().flatMap(projectUrl -> {
-            String mavenLayout = url.substring(projectUrl.length());
+    static final class Snapshot {
+        private final Map<Path, DependencyTrie> rootUrls;
+        private final DependencyTrie urls;
+        private final Map<Path, BinFileState> binFiles;
+        private final Map<Path, RootVersions> rootVersions;
+        private final LocalVersionIndex localVersions;
+        private final Cache<Set<String>, DependencyTrie> projections;
+        private final Cache<CompletionKey, FuzzyMatcher> matchers =
+                Caffeine.newBuilder().maximumSize(16).build();
 
-            int lastSlashIndex = mavenLayout.lastIndexOf('/');
-            if (lastSlashIndex == -1) {
-                return Optional.empty();
-            }
+        /** A snapshot of the given cache roots, whose tries are merged into the single trie completions come from. */
+        Snapshot(Map<Path, DependencyTrie> rootUrls, Map<Path, BinFileState> binFiles) {
+            this(
+                    Map.copyOf(rootUrls),
+                    DependencyTrie.union(rootUrls.values()),
+                    Map.copyOf(binFiles),
+                    Collections.emptyMap(),
+                    LocalVersionIndex.empty(),
+                    Caffeine.newBuilder().maximumSize(16).build());
+        }
 
-            int secondLastSlashIndex = mavenLayout.lastIndexOf('/', lastSlashIndex - 1);
-            if (secondLastSlashIndex == -1) {
-                return Optional.empty();
-            }
+        private Snapshot(
+                Map<Path, DependencyTrie> rootUrls,
+                DependencyTrie urls,
+                Map<Path, BinFileState> binFiles,
+                Map<Path, RootVersions> rootVersions,
+                LocalVersionIndex localVersions,
+                Cache<Set<String>, DependencyTrie> projections) {
+            this.rootUrls = rootUrls;
+            this.urls = urls;
+            this.binFiles = binFiles;
+            this.rootVersions = rootVersions;
+            this.localVersions = localVersions;
+            this.projections = projections;
+        }
 
-            int thirdLastSlashIndex = mavenLayout.lastIndexOf('/', secondLastSlashIndex - 1);
-            if (thirdLastSlashIndex == -1) {
-                return Optional.empty();
-            }
+        /**
+         * Returns this snapshot with the given downloaded versions of every cache root merged into one index, sharing
+         * the projections of the unchanged trie.
+         */
+        Snapshot withLocalVersions(Map<Path, RootVersions> newRootVersions) {
+            return new Snapshot(
+                    rootUrls,
+                    urls,
+                    binFiles,
+                    Map.copyOf(newRootVersions),
+                    LocalVersionIndex.union(StreamEx.ofValues(newRootVersions)
+                            .map(RootVersions::versions)
+                            .toList()),
+                    projections);
+        }
 
-            String group = mavenLayout.substring(0, thirdLastSlashIndex).replace('/', '.');
-            String artifact = mavenLayout.substring(thirdLastSlashIndex + 1, secondLastSlashIndex);
+        Map<Path, DependencyTrie> rootUrls() {
+            return rootUrls;
+        }
 
-            return Optional.of(String.format("%s:%s", group, artifact));
-        });
+        DependencyTrie urls() {
+            return urls;
+        }
+
+        Map<Path, BinFileState> binFiles() {
+            return binFiles;
+        }
+
+        Map<Path, RootVersions> rootVersions() {
+            return rootVersions;
+        }
+
+        LocalVersionIndex localVersions() {
+            return localVersions;
+        }
+
+        DependencyTrie projection(Set<String> repoUrls) {
+            return projections.get(Set.copyOf(repoUrls), urls::project);
+        }
+
+        FuzzyMatcher matcher(CompletionKey key, Function<CompletionKey, FuzzyMatcher> loader) {
+            return matchers.get(key, loader);
+        }
+    }
+
+    /** What is known about a bin file from the last time it was scanned. */
+    @Value.Immutable
+    interface BinFileState {
+        @Value.Parameter
+        long size();
+
+        @Value.Parameter
+        long lastModified();
+
+        /** The offset the next scan of the file resumes from if it has grown. */
+        @Value.Parameter
+        long scannedOffset();
+    }
+
+    /** The versions downloaded into a cache root, and when its {@code files-2.1} folder was last modified. */
+    @Value.Immutable
+    interface RootVersions {
+        @Value.Parameter
+        long lastModified();
+
+        @Value.Parameter
+        LocalVersionIndex versions();
+    }
+
+    @Value.Immutable
+    interface CompletionKey {
+        @Value.Parameter
+        Set<String> repoUrls();
+
+        @Value.Parameter
+        DependencyGroup group();
+
+        @Value.Parameter
+        boolean isPackageName();
+
+        static CompletionKey of(Set<String> repoUrls, DependencyGroup group, boolean isPackageName) {
+            return ImmutableCompletionKey.of(repoUrls, group, isPackageName);
+        }
+    }
+
+    /** The part of a bin file read by one scan task. */
+    @Value.Immutable
+    interface BinFileRange {
+        @Value.Parameter
+        Path binFile();
+
+        @Value.Parameter
+        long fromOffset();
+
+        /** The end of the range, or {@link Long#MAX_VALUE} for a range that runs to the end of the file. */
+        @Value.Parameter
+        long toOffset();
     }
 
     static GradleCacheExplorer getInstance() {
@@ -0,0 +1,74 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.jetbrains.plugins.gradle.settings.GradleSettings;
+
+/**
+ * Finds the {@code modules-2} folders Gradle may have downloaded dependencies into.
+ *
+ * <p>That is the cache in every Gradle user home in use: the default {@code ~/.gradle}, the one set by
+ * {@code GRADLE_USER_HOME}, and any set in the Gradle settings of an open project. A read-only dependency cache
+ * shared through {@code GRADLE_RO_DEP_CACHE} is included too, which holds {@code modules-2} directly rather than under
+ * {@code caches}.
+ */
+final class GradleCacheRoots {
+    private static final String GRADLE_USER_HOME = "GRADLE_USER_HOME";
+    private static final String GRADLE_RO_DEP_CACHE = "GRADLE_RO_DEP_CACHE";
+
+    /** Looks up the cache roots in the environment and open projects, which may change while the IDE runs. */
+    static Set<Path> discover() {
+        List<String> userHomes = new ArrayList<>();
+        userHomes.add(Paths.get(System.getProperty("user.home"), ".gradle").toString());
+        Optional.ofNullable(System.getenv(GRADLE_USER_HOME)).ifPresent(userHomes::add);
+        for (Project project : ProjectManager.getInstance().getOpenProjects()) {
+            if (!project.isDisposed()) {
+                Optional.ofNullable(GradleSettings.getInstance(project).getServiceDirectoryPath())
+                        .ifPresent(userHomes::add);
+            }
+        }
+        return fromLocations(userHomes, Optional.ofNullable(System.getenv(GRADLE_RO_DEP_CACHE)));
+    }
+
+    /** The distinct cache roots of the given Gradle user homes and read-only dependency cache, ignoring blanks. */
+    static Set<Path> fromLocations(Collection<String> userHomes, Optional<String> readOnlyCache) {
+        Set<Path> roots = new LinkedHashSet<>();
+        userHomes.stream()
+                .filter(userHome -> !userHome.isBlank())
+                .forEach(userHome -> roots.add(normalize(Paths.get(userHome, "caches", "modules-2"))));
+        readOnlyCache
+                .filter(cache -> !cache.isBlank())
+                .ifPresent(cache -> roots.add(normalize(Paths.get(cache, "modules-2"))));
+        return roots;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private GradleCacheRoots() {}
+}
@@ -32,7 +32,9 @@ public class LoadCacheOnGradleProjectRefresh implements ExternalSystemTaskNotifi
         if (GradleConstants.SYSTEM_ID.equals(id.getProjectSystemId())
                 && id.getType() == ExternalSystemTaskType.RESOLVE_PROJECT) {
             log.debug("Gradle project refresh finished");
-            GradleCacheExplorer.getInstance().loadCache();
+            GradleCacheExplorer.getInstance().requestReload();
+            // The refresh may have been run to pick up versions that were published since they were last completed
+            VersionCompletionContributor.invalidateVersions();
         }
     }
 
@@ -0,0 +1,191 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.immutables.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The versions Gradle has downloaded, read from the {@code files-2.1/<group>/<artifact>/<version>} directories of
+ * the Gradle cache, indexed by group and then artifact.
+ *
+ * <p>Every artifact also gets a popularity score, so the artifacts that are actually used can be suggested first. Each
+ * cached version counts one point, and an artifact downloaded just now gets ten points more, which halve for every
+ * thirty days since its newest version was downloaded.
+ */
+final class LocalVersionIndex {
+    private static final Logger log = LoggerFactory.getLogger(LocalVersionIndex.class);
+    private static final LocalVersionIndex EMPTY =
+            new LocalVersionIndex(Collections.emptyMap(), Collections.emptyMap());
+    private static final double RECENCY_POINTS = 10;
+    private static final Duration RECENCY_HALF_LIFE = Duration.ofDays(30);
+
+    /** When every version was last downloaded, by group and artifact, which is what indexes are merged from. */
+    private final Map<String, Map<String, Map<String, Long>>> downloads;
+
+    private final Map<String, Map<String, CachedArtifact>> artifacts;
+
+    private LocalVersionIndex(
+            Map<String, Map<String, Map<String, Long>>> downloads, Map<String, Map<String, CachedArtifact>> artifacts) {
+        this.downloads = downloads;
+        this.artifacts = artifacts;
+    }
+
+    static LocalVersionIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Lists the versions cached in the given {@code files-2.1} folder, running {@code checkCanceled} before every group
+     * so it can abort by throwing. The indexes of several folders are merged with {@link #union}.
+     */
+    static LocalVersionIndex scan(Path filesCachePath, Runnable checkCanceled) {
+        Map<String, Map<String, Map<String, Long>>> downloads = new HashMap<>();
+        try {
+            for (Path groupFolder : listFolders(filesCachePath).keySet()) {
+                checkCanceled.run();
+                Map<String, Map<String, Long>> groupDownloads =
+                        downloads.computeIfAbsent(name(groupFolder), group -> new HashMap<>());
+                for (Path artifactFolder : listFolders(groupFolder).keySet()) {
+                    Map<String, Long> artifactDownloads =
+                            groupDownloads.computeIfAbsent(name(artifactFolder), artifact -> new HashMap<>());
+                    listFolders(artifactFolder)
+                            .forEach((versionFolder, attributes) -> artifactDownloads.merge(
+                                    name(versionFolder),
+                                    attributes.lastModifiedTime().toMillis(),
+                                    Math::max));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to list cached versions", e);
+        }
+        return of(downloads);
+    }
+
+    /** Merges the indexes of several {@code files-2.1} folders. A version in more than one of them counts once. */
+    static LocalVersionIndex union(Collection<LocalVersionIndex> indexes) {
+        Map<String, Map<String, Map<String, Long>>> downloads = new HashMap<>();
+        for (LocalVersionIndex index : indexes) {
+            index.downloads.forEach((group, groupDownloads) -> {
+                Map<String, Map<String, Long>> mergedGroup = downloads.computeIfAbsent(group, key -> new HashMap<>());
+                groupDownloads.forEach((artifact, versions) -> {
+                    Map<String, Long> mergedArtifact = mergedGroup.computeIfAbsent(artifact, key -> new HashMap<>());
+                    versions.forEach((version, downloaded) -> mergedArtifact.merge(version, downloaded, Math::max));
+                });
+            });
+        }
+        return of(downloads);
+    }
+
+    private static LocalVersionIndex of(Map<String, Map<String, Map<String, Long>>> downloads) {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, CachedArtifact>> artifacts = new HashMap<>();
+        downloads.forEach((group, groupDownloads) -> {
+            Map<String, CachedArtifact> groupArtifacts = new HashMap<>();
+            groupDownloads.forEach((artifact, versions) -> {
+                long lastModified = versions.values().stream()
+                        .mapToLong(Long::longValue)
+                        .max()
+                        .orElse(0);
+                groupArtifacts.put(
+                        artifact,
+                        ImmutableCachedArtifact.of(
+                                Set.copyOf(versions.keySet()), popularity(versions.size(), lastModified, now)));
+            });
+            artifacts.put(group, groupArtifacts);
+        });
+        return new LocalVersionIndex(downloads, artifacts);
+    }
+
+    Set<String> versions(String group, String artifact) {
+        CachedArtifact cachedArtifact = artifacts(group).get(artifact);
+        return cachedArtifact == null ? Collections.emptySet() : cachedArtifact.versions();
+    }
+
+    /** The popularity of the artifact, or 0 if it has not been downloaded. */
+    double popularity(String group, String artifact) {
+        CachedArtifact cachedArtifact = artifacts(group).get(artifact);
+        return cachedArtifact == null ? 0 : cachedArtifact.popularity();
+    }
+
+    /** The popularity of the most popular artifact in the group, or 0 if nothing in it has been downloaded. */
+    double groupPopularity(String group) {
+        return artifacts(group).values().stream()
+                .mapToDouble(CachedArtifact::popularity)
+                .max()
+                .orElse(0);
+    }
+
+    private Map<String, CachedArtifact> artifacts(String group) {
+        return artifacts.getOrDefault(group, Collections.emptyMap());
+    }
+
+    private static double popularity(int versionCount, long lastModified, long now) {
+        double halfLives = Math.max(0, now - lastModified) / (double) RECENCY_HALF_LIFE.toMillis();
+        return versionCount + RECENCY_POINTS * Math.pow(0.5, halfLives);
+    }
+
+    private static String name(Path folder) {
+        return folder.getFileName().toString();
+    }
+
+    private static Map<Path, BasicFileAttributes> listFolders(Path folder) throws IOException {
+        List<Path> children;
+        try (Stream<Path> stream = Files.list(folder)) {
+            children = stream.collect(Collectors.toList());
+        } catch (NoSuchFileException e) {
+            return Collections.emptyMap();
+        }
+
+        Map<Path, BasicFileAttributes> folders = new HashMap<>();
+        for (Path child : children) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                if (attributes.isDirectory()) {
+                    folders.put(child, attributes);
+                }
+            } catch (NoSuchFileException e) {
+                // Removed by a Gradle cache cleanup since its parent was listed
+            }
+        }
+        return folders;
+    }
+
+    @Value.Immutable
+    interface CachedArtifact {
+        @Value.Parameter
+        Set<String> versions();
+
+        @Value.Parameter
+        double popularity();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.google.common.hash.Hashing;
+import com.palantir.gradle.versions.intellij.ContentsUtil.PageResponse;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.immutables.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the {@code maven-metadata.xml} files of the repositories on disk, so a version completion only downloads one
+ * again once it has changed.
+ *
+ * <p>A file is stored with the {@code ETag} and {@code Last-Modified} headers it was served with, keyed by a hash of
+ * its URL. Every later request for it is a conditional GET, and a {@code 304 Not Modified} reuses the stored copy, so
+ * an unchanged file costs a round trip rather than a download. Responses without either header cannot be revalidated
+ * and are not stored. If the repository cannot be reached, or answers with an error such as a {@code 503 Service
+ * Unavailable}, the stored copy is used as it is. It is only dropped once the repository says the file is gone, with
+ * a {@code 404 Not Found} or {@code 410 Gone}.
+ *
+ * <p>Using a stored copy updates its modification time, and the first request of a session deletes every file that was
+ * not used for {@link #MAX_UNUSED_AGE}, so the copies of artifacts that are no longer completed do not pile up.
+ */
+final class MetadataCache {
+    private static final Logger log = LoggerFactory.getLogger(MetadataCache.class);
+    private static final int MAGIC = 0x47435650;
+    private static final int FORMAT_VERSION = 1;
+    private static final Duration MAX_UNUSED_AGE = Duration.ofDays(30);
+
+    private final Path directory;
+    private final AtomicBoolean pruned = new AtomicBoolean();
+
+    MetadataCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Returns the contents at the URL, revalidating the stored copy if there is one. */
+    Optional<String> get(String url, Fetcher fetcher) {
+        if (pruned.compareAndSet(false, true)) {
+            prune();
+        }
+
+        Path file = fileFor(url);
+        Optional<CachedPage> cached = read(file, url);
+        if (cached.isPresent()) {
+            touch(file);
+        }
+
+        Map<String, String> conditionalHeaders = new HashMap<>();
+        cached.flatMap(CachedPage::etag).ifPresent(etag -> conditionalHeaders.put("If-None-Match", etag));
+        cached.flatMap(CachedPage::lastModified)
+                .ifPresent(lastModified -> conditionalHeaders.put("If-Modified-Since", lastModified));
+
+        Optional<PageResponse> response = fetcher.fetch(url, conditionalHeaders);
+        if (response.isEmpty()) {
+            log.debug("Using the stored copy of {}, as it could not be fetched", url);
+            return cached.map(CachedPage::body);
+        }
+
+        switch (response.get().statusCode()) {
+            case HttpURLConnection.HTTP_NOT_MODIFIED:
+                log.debug("Stored copy of {} is up to date", url);
+                return cached.map(CachedPage::body);
+            case HttpURLConnection.HTTP_OK:
+                Optional<String> etag = response.get().header("ETag");
+                Optional<String> lastModified = response.get().header("Last-Modified");
+                Optional<String> body = response.get().body();
+                if (body.isPresent() && (etag.isPresent() || lastModified.isPresent())) {
+                    write(file, url, ImmutableCachedPage.of(etag, lastModified, body.get()));
+                } else {
+                    delete(file);
+                }
+                return body;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+            case HttpURLConnection.HTTP_GONE:
+                delete(file);
+                return Optional.empty();
+            default:
+                // Most likely a mirror having trouble, which says nothing about whether the file changed
+                log.debug(
+                        "Using the stored copy of {}, as fetching it returned {}",
+                        url,
+                        response.get().statusCode());
+                return cached.map(CachedPage::body);
+        }
+    }
+
+    private Path fileFor(String url) {
+        return directory.resolve(Hashing.sha256().hashString(url, StandardCharsets.UTF_8) + ".bin");
+    }
+
+    /** Deletes the files not used recently, including temporary files left behind by a write that was cut short. */
+    private void prune() {
+        Instant cutoff = Instant.now().minus(MAX_UNUSED_AGE);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> isUnusedSince(file, cutoff)).forEach(MetadataCache::delete);
+        } catch (NoSuchFileException e) {
+            // Nothing has been stored yet
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("Failed to delete the unused files in {}", directory, e);
+        }
+    }
+
+    private static boolean isUnusedSince(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("Failed to mark {} as used", file, e);
+        }
+    }
+
+    private static Optional<CachedPage> read(Path file, String url) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            // The URL is stored too, so a file written by another format version or URL is never mistaken for it
+            if (input.readInt() != MAGIC
+                    || input.readInt() != FORMAT_VERSION
+                    || !input.readUTF().equals(url)) {
+                return Optional.empty();
+            }
+            Optional<String> etag = readOptional(input);
+            Optional<String> lastModified = readOptional(input);
+            byte[] body = new byte[input.readInt()];
+            input.readFully(body);
+            return Optional.of(ImmutableCachedPage.of(etag, lastModified, new String(body, StandardCharsets.UTF_8)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to read the stored copy of {}", url, e);
+            return Optional.empty();
+        }
+    }
+
+    private static void write(Path file, String url, CachedPage page) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile =
+                    Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(url);
+                writeOptional(output, page.etag());
+                writeOptional(output, page.lastModified());
+                // The body can be larger than writeUTF allows
+                byte[] body = page.body().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(body.length);
+                output.write(body);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to store a copy of {}", url, e);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}", file, e);
+        }
+    }
+
+    private static Optional<String> readOptional(DataInput input) throws IOException {
+        return input.readBoolean() ? Optional.of(input.readUTF()) : Optional.empty();
+    }
+
+    private static void writeOptional(DataOutput output, Optional<String> value) throws IOException {
+        output.writeBoolean(value.isPresent());
+        if (value.isPresent()) {
+            output.writeUTF(value.get());
+        }
+    }
+
+    /** Sends a GET request with the given headers, returning nothing if it failed or was cancelled. */
+    @FunctionalInterface
+    interface Fetcher {
+        Optional<PageResponse> fetch(String url, Map<String, String> requestHeaders);
+    }
+
+    @Value.Immutable
+    interface CachedPage {
+        @Value.Parameter
+        Optional<String> etag();
+
+        @Value.Parameter
+        Optional<String> lastModified();
+
+        @Value.Parameter
+        String body();
+    }
+}
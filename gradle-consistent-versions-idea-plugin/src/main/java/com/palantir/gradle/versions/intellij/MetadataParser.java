@@ -0,0 +1,126 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.immutables.value.Value;
+
+/**
+ * Reads the versions out of a {@code maven-metadata.xml} file as it streams past, rather than binding the whole
+ * document to a model of it.
+ *
+ * <p>Only the {@code latest}, {@code release}, {@code lastUpdated} and {@code version} elements below
+ * {@code versioning} are read, and everything else in the file is skipped over. The factory is created once and
+ * shared, as creating one looks up the StAX implementation on the classpath and is far more expensive than the readers
+ * it creates.
+ */
+final class MetadataParser {
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    /**
+     * Parses the metadata read from the reader, which is left for the caller to close.
+     *
+     * @throws XMLStreamException if the metadata is not well-formed XML
+     */
+    static ParsedMetadata parse(Reader input) throws XMLStreamException {
+        ImmutableParsedMetadata.Builder metadata = ImmutableParsedMetadata.builder();
+        List<String> versions = new ArrayList<>();
+        Deque<String> path = new ArrayDeque<>();
+
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(input);
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    path.removeLast();
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (isAt(path, "metadata", "versioning")) {
+                        switch (name) {
+                            case "latest":
+                                metadata.latest(text(reader));
+                                continue;
+                            case "release":
+                                metadata.release(text(reader));
+                                continue;
+                            case "lastUpdated":
+                                metadata.lastUpdated(text(reader));
+                                continue;
+                            default:
+                                break;
+                        }
+                    } else if (name.equals("version") && isAt(path, "metadata", "versioning", "versions")) {
+                        versions.add(text(reader));
+                        continue;
+                    }
+                    path.addLast(name);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return metadata.versions(versions).build();
+    }
+
+    private static boolean isAt(Deque<String> path, String... elements) {
+        if (path.size() != elements.length) {
+            return false;
+        }
+        int index = 0;
+        for (String element : path) {
+            if (!element.equals(elements[index++])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reads the text of the element the reader is at, leaving it at the end of the element. */
+    private static String text(XMLStreamReader reader) throws XMLStreamException {
+        return reader.getElementText().trim();
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Metadata comes from remote repositories, so never resolve anything it points at
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @Value.Immutable
+    interface ParsedMetadata {
+        Optional<String> latest();
+
+        Optional<String> release();
+
+        Optional<String> lastUpdated();
+
+        List<String> versions();
+    }
+
+    private MetadataParser() {}
+}
@@ -16,17 +16,31 @@
 
 package com.palantir.gradle.versions.intellij;
 
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.palantir.gradle.versions.intellij.ContentsUtil.PageResponse;
+import com.palantir.gradle.versions.intellij.MetadataCache.Fetcher;
+import com.palantir.gradle.versions.intellij.MetadataParser.ParsedMetadata;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.xml.stream.XMLStreamException;
 import org.immutables.value.Value;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -37,11 +51,95 @@ import org.slf4j.LoggerFactory;
 
 public class RepositoryExplorer {
     private static final Logger log = LoggerFactory.getLogger(RepositoryExplorer.class);
+    private static final String METADATA_CACHE_PATH = "gradle-consistent-versions/maven-metadata";
 
-    private final Cache<CacheKey, Set<GroupPartOrPackageName>> folderCache = Caffeine.newBuilder()
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .maximumSize(100)
-            .build();
+    // Shared by every explorer, as each completion contributor has its own but they often ask for the same URLs
+    private static final SingleFlight<String, Set<GroupPartOrPackageName>> folderRequests = new SingleFlight<>();
+    private static final SingleFlight<String, Set<DependencyVersion>> versionRequests = new SingleFlight<>();
+
+    private static final Duration MISSING_URL_TTL = Duration.ofMinutes(1);
+    private static final String VERSION_CACHE_TTL_KEY = "gradle.consistent.versions.version.cache.ttl.seconds";
+    private static final long VERSION_CACHE_MAX_VERSIONS = 100_000;
+
+    private final Cache<CacheKey, Set<GroupPartOrPackageName>> folderCache;
+
+    /**
+     * The URLs that returned {@code 404 Not Found}, mapped to true, or listed no folders, mapped to false. They are
+     * kept for less time than the listings, as a missing artifact may be published at any moment.
+     */
+    private final Cache<String, Boolean> missingUrls;
+
+    /**
+     * The versions of every artifact completed recently, so completing the same line again does not even need to
+     * revalidate the metadata. The cache is bounded by the total number of versions rather than of artifacts, as an
+     * artifact can have anything from one version to thousands.
+     */
+    private final Cache<VersionsKey, Set<DependencyVersion>> versionCache;
+
+    private final MetadataCache metadataCache;
+    private final Fetcher fetcher;
+    private final Runnable checkCanceled;
+
+    public RepositoryExplorer() {
+        this(
+                new MetadataCache(PathManager.getSystemDir().resolve(METADATA_CACHE_PATH)),
+                RepositoryExplorer::fetchPage,
+                ProgressManager::checkCanceled,
+                Ticker.systemTicker(),
+                () -> Duration.ofSeconds(Registry.intValue(VERSION_CACHE_TTL_KEY)));
+    }
+
+    /**
+     * Sends requests through {@code fetcher} and runs {@code checkCanceled} after each of them, instead of the IDE's
+     * pooled threads and progress indicator. {@code versionCacheTtl} is asked again for every version cached, so a
+     * change to the registry key applies from the next completion rather than the next restart.
+     */
+    @VisibleForTesting
+    RepositoryExplorer(
+            MetadataCache metadataCache,
+            Fetcher fetcher,
+            Runnable checkCanceled,
+            Ticker ticker,
+            Supplier<Duration> versionCacheTtl) {
+        this.metadataCache = metadataCache;
+        this.fetcher = fetcher;
+        this.checkCanceled = checkCanceled;
+        this.versionCache = Caffeine.newBuilder()
+                .expireAfter(expireAfterWrite(versionCacheTtl))
+                .maximumWeight(VERSION_CACHE_MAX_VERSIONS)
+                .<VersionsKey, Set<DependencyVersion>>weigher((key, versions) -> versions.size())
+                .ticker(ticker)
+                .build();
+        this.folderCache = Caffeine.newBuilder()
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .maximumSize(100)
+                .ticker(ticker)
+                .build();
+        this.missingUrls = Caffeine.newBuilder()
+                .expireAfterWrite(MISSING_URL_TTL)
+                .maximumSize(1000)
+                .ticker(ticker)
+                .build();
+    }
+
+    private static <K, V> Expiry<K, V> expireAfterWrite(Supplier<Duration> ttl) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(K key, V value, long currentTime) {
+                return ttl.get().toNanos();
+            }
+
+            @Override
+            public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+                return ttl.get().toNanos();
+            }
+
+            @Override
+            public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
 
     public final Set<GroupPartOrPackageName> getGroupPartOrPackageName(DependencyGroup group, String url) {
         CacheKey cacheKey = CacheKey.of(url, group);
@@ -55,33 +153,117 @@ public class RepositoryExplorer {
 
     private Set<GroupPartOrPackageName> loadFolders(DependencyGroup group, String url) {
         String urlString = url + group.asUrlString();
-        Optional<String> content = fetchContent(urlString);
-
-        if (content.isEmpty()) {
-            log.debug("Page does not exist");
+        if (isKnownMissingFolder(url, urlString)) {
+            log.debug("Not listing {}, as it is known to be missing", urlString);
             return Collections.emptySet();
         }
 
-        return fetchFoldersFromContent(content.get());
+        return singleFlight(folderRequests, urlString, () -> {
+            Optional<PageResponse> response = fetcher.fetch(urlString, Collections.emptyMap());
+            if (response.isPresent() && response.get().statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                missingUrls.put(urlString, true);
+            }
+            Optional<String> content = response.flatMap(PageResponse::body);
+
+            if (content.isEmpty()) {
+                log.debug("Page does not exist");
+                return Collections.emptySet();
+            }
+
+            Set<GroupPartOrPackageName> folders = fetchFoldersFromContent(content.get());
+            if (folders.isEmpty()) {
+                missingUrls.put(urlString, false);
+            }
+            return folders;
+        });
+    }
+
+    /**
+     * Whether the folder returned {@code 404 Not Found} or listed no folders recently, or any folder between it and the
+     * repository returned {@code 404 Not Found}, in which case nothing below it can exist either. The repository and
+     * the folders above it are not looked at, as the same host may serve another repository below a missing folder.
+     */
+    private boolean isKnownMissingFolder(String repositoryUrl, String folderUrl) {
+        if (missingUrls.getIfPresent(folderUrl) != null) {
+            return true;
+        }
+        int slash = folderUrl.indexOf('/', repositoryUrl.length());
+        while (slash != -1 && slash < folderUrl.length() - 1) {
+            if (Boolean.TRUE.equals(missingUrls.getIfPresent(folderUrl.substring(0, slash + 1)))) {
+                return true;
+            }
+            slash = folderUrl.indexOf('/', slash + 1);
+        }
+        return false;
     }
 
     public final Set<DependencyVersion> getVersions(
             DependencyGroup group, DependencyName dependencyPackage, String url) {
-        String urlString = url + group.asUrlString() + dependencyPackage.name() + "/maven-metadata.xml";
-        Optional<String> content = fetchContent(urlString);
+        VersionsKey versionsKey = VersionsKey.of(url, group, dependencyPackage);
+        Set<DependencyVersion> cachedVersions = versionCache.getIfPresent(versionsKey);
+        if (cachedVersions != null) {
+            return cachedVersions;
+        }
 
-        if (content.isEmpty()) {
-            log.debug("Empty metadata content received");
+        String urlString = url + group.asUrlString() + dependencyPackage.name() + "/maven-metadata.xml";
+        // Only the file itself is checked, as repositories that do not list folders still serve the files in them
+        if (missingUrls.getIfPresent(urlString) != null) {
+            log.debug("Not fetching {}, as it is known to be missing", urlString);
             return Collections.emptySet();
         }
 
-        return parseVersionsFromContent(content.get());
+        // Not loaded through the cache, which would block other callers for the key without checking for cancellation.
+        // Empty results are left to the cache of missing URLs, as they may also come from a failed request.
+        Set<DependencyVersion> versions = singleFlight(versionRequests, urlString, () -> {
+            Optional<String> content = metadataCache.get(urlString, (metadataUrl, requestHeaders) -> {
+                Optional<PageResponse> response = fetcher.fetch(metadataUrl, requestHeaders);
+                if (response.isPresent() && response.get().statusCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    missingUrls.put(metadataUrl, true);
+                }
+                return response;
+            });
+
+            if (content.isEmpty()) {
+                log.debug("Empty metadata content received");
+                return Collections.emptySet();
+            }
+
+            return Collections.unmodifiableSet(parseVersionsFromContent(content.get()));
+        });
+        if (!versions.isEmpty()) {
+            versionCache.put(versionsKey, versions);
+        }
+        return versions;
+    }
+
+    /** Forgets the versions of every artifact, so the next completion asks the repositories again. */
+    public final void invalidateVersions() {
+        versionCache.invalidateAll();
+    }
+
+    /** Forgets the versions of the artifact in every repository, so the next completion asks the repositories again. */
+    public final void invalidateVersions(DependencyGroup group, DependencyName dependencyPackage) {
+        versionCache
+                .asMap()
+                .keySet()
+                .removeIf(key -> key.group().equals(group) && key.name().equals(dependencyPackage));
     }
 
-    private Optional<String> fetchContent(String urlString) {
+    /** Sends one request for the URL however many callers ask for it at the same time. */
+    private <V> V singleFlight(SingleFlight<String, V> requests, String urlString, Supplier<V> load) {
+        V value = requests.get(urlString, () -> {
+            V loaded = load.get();
+            // A request cut short by cancellation must not be shared with the callers waiting for it
+            checkCanceled.run();
+            return loaded;
+        });
+        log.debug("{} of {} requests were merged into one already in flight", requests.merged(), requests.requests());
+        return value;
+    }
+
+    private static Optional<PageResponse> fetchPage(String urlString, Map<String, String> requestHeaders) {
         try {
-            URL url = new URL(urlString);
-            return ContentsUtil.fetchPageContents(url);
+            return ContentsUtil.fetchPage(new URL(urlString), requestHeaders);
         } catch (MalformedURLException e) {
             log.error("Malformed URL", e);
             return Optional.empty();
@@ -106,21 +288,34 @@ public class RepositoryExplorer {
     private Set<DependencyVersion> parseVersionsFromContent(String content) {
         Set<DependencyVersion> versions = new LinkedHashSet<>();
         try {
-            XmlMapper xmlMapper = new XmlMapper();
-
-            Metadata metadata = xmlMapper.readValue(content, Metadata.class);
-            if (metadata.versioning() != null && metadata.versioning().versions() != null) {
-                String latest = metadata.versioning().latest();
-                for (String version : metadata.versioning().versions()) {
-                    versions.add(DependencyVersion.of(version, latest.equals(version)));
-                }
+            ParsedMetadata metadata = MetadataParser.parse(new StringReader(content));
+            for (String version : metadata.versions()) {
+                versions.add(DependencyVersion.of(
+                        version, metadata.latest().filter(version::equals).isPresent()));
             }
-        } catch (Exception e) {
+        } catch (XMLStreamException e) {
             log.error("Failed to parse maven-metadata.xml", e);
         }
         return versions;
     }
 
+    @Value.Immutable
+    interface VersionsKey {
+        String url();
+
+        DependencyGroup group();
+
+        DependencyName name();
+
+        static VersionsKey of(String url, DependencyGroup group, DependencyName name) {
+            return ImmutableVersionsKey.builder()
+                    .url(url)
+                    .group(group)
+                    .name(name)
+                    .build();
+        }
+    }
+
     @Value.Immutable
     interface CacheKey {
         String url();
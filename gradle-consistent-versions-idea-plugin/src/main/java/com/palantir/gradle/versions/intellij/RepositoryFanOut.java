@@ -0,0 +1,128 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queries every repository at once rather than one after the other, so a completion waits as long as the slowest
+ * repository instead of all of them added up.
+ *
+ * <p>The queries run on the application pool under a wrapper of the completion's progress indicator, so they are
+ * cancelled along with it but never start or stop it. Their results are handed back on the calling thread as each
+ * repository answers, as completion results may only be added from the thread the completion runs on. Repositories
+ * that have not answered by the deadline are left out. Their queries are left to finish in the background, so the
+ * next completion can use what they cached.
+ */
+final class RepositoryFanOut {
+    private static final Logger log = LoggerFactory.getLogger(RepositoryFanOut.class);
+    private static final String DEADLINE_KEY = "gradle.consistent.versions.repository.deadline.ms";
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** How long a completion waits for the repositories to answer, as configured in the registry. */
+    static Duration deadline() {
+        return Duration.ofMillis(Registry.intValue(DEADLINE_KEY));
+    }
+
+    /**
+     * Runs the query against every repository concurrently and passes each result to the handler as soon as it
+     * arrives, until every repository has answered, the deadline has passed, or the handler returns false to say it
+     * needs no more results.
+     *
+     * @throws ProcessCanceledException as soon as the IDE cancels the completion this is computed for
+     */
+    static <T> void forEachResult(
+            Collection<String> repositories, Function<String, T> query, Duration deadline, Predicate<T> handler) {
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        CompletionService<T> completionService =
+                new ExecutorCompletionService<>(AppExecutorUtil.getAppExecutorService());
+        List<Future<T>> queries = new ArrayList<>();
+        for (String repository : repositories) {
+            queries.add(completionService.submit(
+                    () -> indicator == null ? query.apply(repository) : applyUnder(indicator, query, repository)));
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        try {
+            for (int remaining = queries.size(); remaining > 0; ) {
+                ProgressManager.checkCanceled();
+                long timeLeft = deadlineNanos - System.nanoTime();
+                if (timeLeft <= 0) {
+                    log.debug("{} of {} repositories did not answer within {}", remaining, queries.size(), deadline);
+                    return;
+                }
+
+                // Polled in short steps, so a cancelled completion stops waiting straight away
+                Future<T> answered =
+                        completionService.poll(Math.min(timeLeft, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+                if (answered == null) {
+                    continue;
+                }
+                remaining--;
+                T result;
+                try {
+                    result = answered.get();
+                } catch (ExecutionException e) {
+                    log.debug("Repository query failed", e.getCause());
+                    continue;
+                }
+                if (!handler.test(result)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException(e);
+        } finally {
+            // Queries that have not started yet are not needed any more
+            queries.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Runs the query so it is cancelled along with the indicator. The completion only accepts results while its
+     * indicator is running, so a worker must not stop it when done, as {@link ProgressManager#runProcess} would.
+     */
+    private static <T> T applyUnder(ProgressIndicator indicator, Function<String, T> query, String repository) {
+        AtomicReference<T> result = new AtomicReference<>();
+        ProgressManager.getInstance()
+                .executeProcessUnderProgress(
+                        () -> result.set(query.apply(repository)), new SensitiveProgressWrapper(indicator));
+        return result.get();
+    }
+
+    private RepositoryFanOut() {}
+}
@@ -0,0 +1,233 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes the records of Gradle's {@code resource-at-url.bin}, rather than searching it for anything that looks like
+ * a URL the way {@link BinFileScanner} does.
+ *
+ * <p>The file is one of Gradle's persistent B-tree caches: a sequence of blocks, each framed as a type byte, the
+ * payload size as an int, the payload, and an int tail. The index blocks only hold hashes of the keys, so the URLs
+ * are read from the values in the data blocks instead, which Gradle writes as a length-prefixed Kryo record of the
+ * cached file, the time it was cached and the metadata of the resource, starting with its URL. Only the URLs that
+ * {@link BinFileScanner} would have found are passed on: those of poms and jars downloaded over {@code https://}.
+ *
+ * <p>Only the {@code metadata-2.x} folders of the Gradle versions this layout was checked against are decoded. Any
+ * other version, or a file that does not follow the layout, is reported as an {@link UnknownLayoutException} so the
+ * caller can fall back to the heuristic scan.
+ */
+final class ResourceAtUrlDecoder {
+    private static final Pattern METADATA_FOLDER = Pattern.compile("metadata-2\\.(\\d+)");
+    private static final int FIRST_KNOWN_VERSION = 97;
+    private static final int LAST_KNOWN_VERSION = 107;
+
+    private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+
+    private static final int BLOCK_HEADER_SIZE = 1 + Integer.BYTES;
+    private static final int BLOCK_TAIL_SIZE = Integer.BYTES;
+    private static final byte DATA_BLOCK = 0x33;
+    private static final byte FREE_LIST_BLOCK = 0x44;
+    private static final byte HEADER_BLOCK = 0x55;
+    private static final byte INDEX_BLOCK = 0x77;
+
+    /** Whether the bin file is in a metadata folder whose layout this decoder knows. */
+    static boolean supports(Path binFile) {
+        Path metadataFolder = binFile.getParent();
+        if (metadataFolder == null) {
+            return false;
+        }
+        Matcher matcher = METADATA_FOLDER.matcher(metadataFolder.getFileName().toString());
+        if (!matcher.matches()) {
+            return false;
+        }
+        try {
+            int version = Integer.parseInt(matcher.group(1));
+            return version >= FIRST_KNOWN_VERSION && version <= LAST_KNOWN_VERSION;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Passes the URL of every pom and jar recorded in the blocks from {@code fromOffset} onwards to the consumer. The
+     * offset must be the start of a block, which every offset this method returns is. {@code checkCanceled} is run
+     * every {@value #CANCELLATION_CHECK_INTERVAL} blocks so it can abort the decode by throwing.
+     *
+     * @return the offset a later decode should resume from, which is the start of the block still being written at
+     *         the end of the file, or the end of the file if there is none
+     * @throws UnknownLayoutException if the file does not follow the layout, in which case the consumer may already
+     *         have received the URLs of the blocks before the one that did not
+     */
+    static long decodeResourceUrls(Path binFile, long fromOffset, Consumer<String> consumer, Runnable checkCanceled)
+            throws IOException {
+        long size = Files.size(binFile);
+        try (InputStream stream = Files.newInputStream(binFile);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            input.skipNBytes(fromOffset);
+            long position = fromOffset;
+            for (int blocks = 0; position + BLOCK_HEADER_SIZE + BLOCK_TAIL_SIZE <= size; blocks++) {
+                if (blocks % CANCELLATION_CHECK_INTERVAL == 0) {
+                    checkCanceled.run();
+                }
+                byte type = input.readByte();
+                int payloadSize = input.readInt();
+                if (!isKnownBlockType(type) || payloadSize < 0) {
+                    throw new UnknownLayoutException(binFile, position);
+                }
+                long end = position + BLOCK_HEADER_SIZE + payloadSize + BLOCK_TAIL_SIZE;
+                if (end > size) {
+                    // Gradle is still writing this block
+                    return position;
+                }
+
+                int read = 0;
+                if (type == DATA_BLOCK) {
+                    read = readDataBlock(input, payloadSize, binFile, position, consumer);
+                }
+                input.skipNBytes(payloadSize - read + BLOCK_TAIL_SIZE);
+                position = end;
+            }
+            return position;
+        } catch (EOFException e) {
+            throw new UnknownLayoutException(binFile, fromOffset);
+        }
+    }
+
+    /** Reads the value of a data block and returns the number of bytes of its payload that were read. */
+    private static int readDataBlock(
+            DataInputStream input, int payloadSize, Path binFile, long position, Consumer<String> consumer)
+            throws IOException {
+        // The capacity the block was allocated with, which is not needed to read it
+        input.readInt();
+        int valueSize = input.readInt();
+        if (valueSize < 0 || 2 * Integer.BYTES + valueSize > payloadSize) {
+            throw new UnknownLayoutException(binFile, position);
+        }
+        byte[] value = new byte[valueSize];
+        input.readFully(value);
+
+        try {
+            ByteBuffer record = ByteBuffer.wrap(value);
+            if (readBoolean(record)) {
+                // The path of the cached file
+                readString(record);
+            }
+            // The time it was cached
+            record.getLong();
+            if (readBoolean(record)) {
+                String url = readString(record);
+                // Gradle also records metadata files, directory listings and checksums, which do not name an artifact
+                if (url != null && BinFileScanner.isResourceUrl(url)) {
+                    consumer.accept(url);
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new UnknownLayoutException(binFile, position);
+        }
+        return 2 * Integer.BYTES + valueSize;
+    }
+
+    private static boolean isKnownBlockType(byte type) {
+        return type == DATA_BLOCK || type == FREE_LIST_BLOCK || type == HEADER_BLOCK || type == INDEX_BLOCK;
+    }
+
+    private static boolean readBoolean(ByteBuffer record) {
+        byte value = record.get();
+        if (value != 0 && value != 1) {
+            throw new IllegalArgumentException("Not a boolean: " + value);
+        }
+        return value == 1;
+    }
+
+    /**
+     * Reads a string the way Kryo writes it: short ASCII strings as their characters with the top bit of the last one
+     * set, and everything else as a variable length character count, plus one so that 0 can mean null, followed by
+     * the characters in UTF-8.
+     */
+    private static String readString(ByteBuffer record) {
+        int first = record.get(record.position()) & 0xff;
+        if ((first & 0x80) == 0) {
+            StringBuilder ascii = new StringBuilder();
+            int value;
+            do {
+                value = record.get() & 0xff;
+                ascii.append((char) (value & 0x7f));
+            } while ((value & 0x80) == 0);
+            return ascii.toString();
+        }
+
+        int charCount = readLength(record);
+        if (charCount == 0) {
+            return null;
+        }
+        char[] chars = new char[charCount - 1];
+        for (int i = 0; i < chars.length; i++) {
+            int value = record.get() & 0xff;
+            switch (value >> 4) {
+                case 12:
+                case 13:
+                    chars[i] = (char) ((value & 0x1f) << 6 | (record.get() & 0x3f));
+                    break;
+                case 14:
+                    chars[i] = (char) ((value & 0x0f) << 12 | (record.get() & 0x3f) << 6 | (record.get() & 0x3f));
+                    break;
+                default:
+                    chars[i] = (char) value;
+            }
+        }
+        return new String(chars);
+    }
+
+    /** The first byte holds the flag bit, a continuation bit and 6 bits of the length, the rest 7 bits each. */
+    private static int readLength(ByteBuffer record) {
+        int value = record.get() & 0xff;
+        int length = value & 0x3f;
+        if ((value & 0x40) == 0) {
+            return length;
+        }
+        for (int shift = 6; shift <= 27; shift += 7) {
+            value = record.get() & 0xff;
+            length |= (value & 0x7f) << shift;
+            if ((value & 0x80) == 0) {
+                return length;
+            }
+        }
+        throw new IllegalArgumentException("String length is too long");
+    }
+
+    /** Thrown when a bin file does not follow the layout of the Gradle versions the decoder knows. */
+    static final class UnknownLayoutException extends IOException {
+        UnknownLayoutException(Path binFile, long position) {
+            super("Unknown layout in " + binFile + " at offset " + position);
+        }
+    }
+
+    private ResourceAtUrlDecoder() {}
+}
@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Merges concurrent loads of the same key into one, so completions that restart on every keystroke share a single
+ * request for a URL rather than sending one each.
+ *
+ * <p>The first caller for a key runs the load, and anyone asking for the key until it finishes waits for its result.
+ * A waiting caller still stops as soon as its own completion is cancelled. If the load is cancelled, because the
+ * completion that ran it was, the callers waiting for it load the key again themselves rather than sharing a result
+ * that was cut short.
+ */
+final class SingleFlight<K, V> {
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final Runnable checkCanceled;
+
+    SingleFlight() {
+        this(ProgressManager::checkCanceled);
+    }
+
+    /** Runs {@code checkCanceled} while waiting for a load instead of the IDE's, so it can stop a waiting caller. */
+    @VisibleForTesting
+    SingleFlight(Runnable checkCanceled) {
+        this.checkCanceled = checkCanceled;
+    }
+
+    /** Returns the value for the key, either by running the load or by waiting for the one already running. */
+    V get(K key, Supplier<V> load) {
+        requests.incrementAndGet();
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+            if (running == null) {
+                return run(key, flight, load);
+            }
+
+            // Counted while waiting, so the count also covers callers that have joined a load still running
+            merged.incrementAndGet();
+            try {
+                return await(running);
+            } catch (ProcessCanceledException e) {
+                // Our own completion was cancelled, rather than the one running the load
+                merged.decrementAndGet();
+                throw e;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof CompletionException
+                        ? e.getCause().getCause()
+                        : e.getCause();
+                if (!(cause instanceof ProcessCanceledException)) {
+                    // The same failure the caller running the load sees
+                    Throwables.throwIfUnchecked(cause);
+                    throw new IllegalStateException("Failed to load " + key, cause);
+                }
+                // Not shared after all, as this caller loads the key again itself
+                merged.decrementAndGet();
+            }
+        }
+    }
+
+    /** The number of values asked for. */
+    long requests() {
+        return requests.get();
+    }
+
+    /**
+     * The number of values, or failures, taken from a load already running rather than loaded again. Callers that
+     * joined a load which was then cancelled are not counted.
+     */
+    long merged() {
+        return merged.get();
+    }
+
+    private V run(K key, CompletableFuture<V> flight, Supplier<V> load) {
+        try {
+            V value = load.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private V await(CompletableFuture<V> running) throws ExecutionException {
+        while (true) {
+            checkCanceled.run();
+            try {
+                return running.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check for cancellation again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            }
+        }
+    }
+}
@@ -15,29 +15,35 @@
  */
 package com.palantir.gradle.versions.intellij;
 
+import com.google.common.collect.ComparisonChain;
 import com.intellij.codeInsight.completion.CompletionContributor;
 import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.CompletionSorter;
 import com.intellij.codeInsight.completion.CompletionType;
-import com.intellij.codeInsight.completion.PrioritizedLookupElement;
 import com.intellij.codeInsight.lookup.LookupElement;
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.codeInsight.lookup.LookupElementPresentation;
+import com.intellij.codeInsight.lookup.LookupElementWeigher;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.patterns.PlatformPatterns;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.ProcessingContext;
+import com.intellij.util.text.VersionComparatorUtil;
 import com.palantir.gradle.versions.intellij.psi.VersionPropsDependencyVersion;
 import com.palantir.gradle.versions.intellij.psi.VersionPropsProperty;
 import com.palantir.gradle.versions.intellij.psi.VersionPropsTypes;
-import java.util.stream.IntStream;
-import one.util.streamex.StreamEx;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class VersionCompletionContributor extends CompletionContributor {
 
     private static final RepositoryExplorer repositoryExplorer = new RepositoryExplorer();
+    private static final String CACHED_VERSIONS_FIRST_KEY = "gradle.consistent.versions.completion.cached.first";
 
     VersionCompletionContributor() {
         extend(
@@ -61,25 +67,160 @@ public class VersionCompletionContributor extends CompletionContributor {
 
                         Project project = parameters.getOriginalFile().getProject();
 
-                        StreamEx.of(RepositoryLoader.loadRepositories(project))
-                                .flatMap(url -> repositoryExplorer.getVersions(group, dependencyPackage, url).stream())
-                                .zipWith(IntStream.iterate(0, i -> i + 1).boxed())
-                                .mapKeyValue(this::getLookupElement)
-                                .forEach(resultSet::addElement);
-                    }
+                        // Local and remote versions arrive separately, so they are ordered by version instead of by
+                        // the order they were added in
+                        CompletionResultSet sortedResultSet = resultSet.withRelevanceSorter(
+                                CompletionSorter.defaultSorter(parameters, resultSet.getPrefixMatcher())
+                                        .weighBefore(
+                                                "priority",
+                                                new NewestVersionFirst(Registry.is(CACHED_VERSIONS_FIRST_KEY))));
+                        // Every version is only shown once, however many of the cache and the repositories report it
+                        Map<String, VersionLookupElement> addedVersions = new HashMap<>();
+
+                        // Versions Gradle already downloaded are shown straight away, without waiting on the network
+                        Set<String> cachedVersions =
+                                GradleCacheExplorer.getInstance().getCachedVersions(group, dependencyPackage);
+                        cachedVersions.forEach(version ->
+                                addVersion(sortedResultSet, addedVersions, DependencyVersion.of(version, false), true));
 
-                    private LookupElement getLookupElement(DependencyVersion version, Integer priority) {
-                        return version.isLatest()
-                                ? PrioritizedLookupElement.withPriority(
-                                        LookupElementBuilder.create(version)
-                                                .withTypeText("Latest", true)
-                                                .withLookupString("latest"),
-                                        Double.MAX_VALUE)
-                                : PrioritizedLookupElement.withPriority(LookupElementBuilder.create(version), priority);
+                        // The repositories are queried at once and each one's versions are added as soon as it answers
+                        RepositoryFanOut.forEachResult(
+                                RepositoryLoader.loadRepositories(project),
+                                url -> repositoryExplorer.getVersions(group, dependencyPackage, url),
+                                RepositoryFanOut.deadline(),
+                                versions -> {
+                                    versions.forEach(
+                                            version -> addVersion(sortedResultSet, addedVersions, version, false));
+                                    return !sortedResultSet.isStopped();
+                                });
                     }
                 });
     }
 
+    /**
+     * Adds the version unless it was added already. A version that was added before any repository reported it as
+     * the latest, as a cached version or by a repository with a different latest version, is marked as the latest
+     * instead of being added a second time.
+     */
+    private static void addVersion(
+            CompletionResultSet resultSet,
+            Map<String, VersionLookupElement> addedVersions,
+            DependencyVersion version,
+            boolean cached) {
+        VersionLookupElement added = addedVersions.get(version.toString());
+        if (added == null) {
+            VersionLookupElement element = new VersionLookupElement(version, cached);
+            addedVersions.put(version.toString(), element);
+            resultSet.addElement(element);
+        } else if (version.isLatest()) {
+            added.markLatest();
+        }
+    }
+
+    /** Forgets the versions fetched from the repositories, so the next completion asks them again. */
+    static void invalidateVersions() {
+        repositoryExplorer.invalidateVersions();
+    }
+
+    /**
+     * A version, marked as cached if it is already in the local Gradle cache, as picking one means the next lock and
+     * sync do not have to download anything. Whether it is the latest can change after it was added, so it is rendered
+     * and matched from the current state rather than from a fixed presentation.
+     */
+    private static final class VersionLookupElement extends LookupElement {
+        private final DependencyVersion version;
+        private final boolean cached;
+        private volatile boolean latest;
+
+        VersionLookupElement(DependencyVersion version, boolean cached) {
+            this.version = version;
+            this.cached = cached;
+            this.latest = version.isLatest();
+        }
+
+        void markLatest() {
+            latest = true;
+        }
+
+        boolean isLatest() {
+            return latest;
+        }
+
+        boolean isCached() {
+            return cached;
+        }
+
+        @Override
+        public Object getObject() {
+            return version;
+        }
+
+        @Override
+        public String getLookupString() {
+            return version.toString();
+        }
+
+        @Override
+        public Set<String> getAllLookupStrings() {
+            return latest ? Set.of(version.toString(), "latest") : Set.of(version.toString());
+        }
+
+        @Override
+        public void renderElement(LookupElementPresentation presentation) {
+            presentation.setItemText(version.toString());
+            if (latest) {
+                presentation.setTypeText(cached ? "Latest, cached" : "Latest");
+            } else if (cached) {
+                presentation.setTypeText("Cached");
+            }
+            presentation.setTypeGrayed(true);
+        }
+    }
+
+    /**
+     * Sorts the latest version first, followed by the other versions from newest to oldest. Unless turned off in the
+     * registry, versions already in the local Gradle cache come before those that would have to be downloaded.
+     */
+    private static final class NewestVersionFirst extends LookupElementWeigher {
+        private final boolean cachedFirst;
+
+        NewestVersionFirst(boolean cachedFirst) {
+            // Weighed on every arrangement rather than once, as a version can be marked as the latest after it is added
+            super("newestVersionFirst", true, true);
+            this.cachedFirst = cachedFirst;
+        }
+
+        @Override
+        public Comparable<VersionWeight> weigh(LookupElement element) {
+            if (!(element instanceof VersionLookupElement)) {
+                return null;
+            }
+            VersionLookupElement version = (VersionLookupElement) element;
+            return new VersionWeight(version.getLookupString(), version.isLatest(), cachedFirst && version.isCached());
+        }
+    }
+
+    private static final class VersionWeight implements Comparable<VersionWeight> {
+        private final String version;
+        private final boolean latest;
+        private final boolean preferred;
+
+        VersionWeight(String version, boolean latest, boolean preferred) {
+            this.version = version;
+            this.latest = latest;
+            this.preferred = preferred;
+        }
+
+        @Override
+        public int compareTo(VersionWeight other) {
+            return ComparisonChain.start()
+                    .compareFalseFirst(latest, other.latest)
+                    .compareFalseFirst(preferred, other.preferred)
+                    .compare(version, other.version, VersionComparatorUtil::compare)
+                    .result();
+        }
+    }
+
     private VersionPropsProperty findParentProperty(VersionPropsDependencyVersion versionElement) {
         return versionElement == null ? null : PsiTreeUtil.getParentOfType(versionElement, VersionPropsProperty.class);
     }
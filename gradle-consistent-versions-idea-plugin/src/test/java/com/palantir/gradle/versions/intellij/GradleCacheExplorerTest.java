@@ -17,16 +17,40 @@
 package com.palantir.gradle.versions.intellij;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -34,23 +58,30 @@ class GradleCacheExplorerTest {
 
     private GradleCacheExplorer explorer;
 
+    @AfterEach
+    void after() {
+        if (explorer != null) {
+            explorer.dispose();
+        }
+    }
+
     @Test
     void test_gets_valid_urls_only() {
-        explorer = new GradleCacheExplorer();
-        assertThat(explorer.isValidResourceUrl(
+        assertThat(BinFileScanner.isResourceUrl(
                         "https://repo.maven.apache.org/maven2/com/example/artifact/1.0/artifact-1.0.pom"))
                 .as("because the URL is from a known valid repository and ends with .pom")
                 .isTrue();
 
-        assertThat(explorer.isValidResourceUrl("https://jcenter.bintray.com/com/example/artifact/1.0/artifact-1.0.jar"))
+        assertThat(BinFileScanner.isResourceUrl(
+                        "https://jcenter.bintray.com/com/example/artifact/1.0/artifact-1.0.jar"))
                 .as("because the URL is from a known valid repository and ends with .jar")
                 .isTrue();
 
-        assertThat(explorer.isValidResourceUrl("example.com/com/example/artifact/1.0/artifact-1.0.pom"))
+        assertThat(BinFileScanner.isResourceUrl("example.com/com/example/artifact/1.0/artifact-1.0.pom"))
                 .as("because the URL is not a valid URL")
                 .isFalse();
 
-        assertThat(explorer.isValidResourceUrl(
+        assertThat(BinFileScanner.isResourceUrl(
                         "https://repo.maven.apache.org/maven2/com/example/artifact/1.0/artifact-1.0.txt"))
                 .as("because the URL ends with an invalid extension")
                 .isFalse();
@@ -58,49 +89,348 @@ class GradleCacheExplorerTest {
 
     @Test
     void test_gets_all_strings_from_bin(@TempDir File tempDir) throws IOException {
-        explorer = new GradleCacheExplorer();
         File tempFile = new File(tempDir, "test.bin");
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile, StandardCharsets.UTF_8))) {
             writer.write("hello.jar\nworld.pom\nanother.jar\b\f");
         }
 
-        Stream<String> result = explorer.extractStringsFromBinFile(tempFile.toPath());
-        List<String> resultList = result.collect(Collectors.toList());
+        List<String> result = new ArrayList<>();
+        BinFileScanner.scanStrings(tempFile.toPath(), result::add, () -> {});
 
-        assertThat(resultList)
+        assertThat(result)
                 .as("because the file contains these specific strings")
                 .containsOnly("hello.jar", "world.pom", "another.jar");
     }
 
     @Test
-    void test_extract_group_artifact_from_url_correctly() {
-        explorer = new GradleCacheExplorer();
-        Set<String> projectUrls = Set.of("https://repo.maven.apache.org/maven2/", "https://jcenter.bintray.com/");
+    void test_scans_only_resource_urls_from_bin(@TempDir File tempDir) throws IOException {
+        File tempFile = new File(tempDir, "test.bin");
+        byte[] noise = new byte[(1 << 20) - 90];
+        Arrays.fill(noise, (byte) 'x');
+        try (OutputStream output = new FileOutputStream(tempFile)) {
+            output.write("\u0001https://repo.one/a/b/1.0/b-1.0.pom\u0000https://repo.one/a/b/1.0/b-1.0.txt\u0003"
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            output.write(noise);
+            // Spans the boundary between two chunks of the file
+            output.write("\u0002https://repo.one/c/d/2.0/d-2.0.jar\u0002http://repo.one/e/f/3.0/f-3.0.jar"
+                    .getBytes(StandardCharsets.ISO_8859_1));
+        }
 
-        assertThat(explorer.extractGroupAndArtifactFromUrl(
-                                projectUrls,
-                                "https://repo.maven.apache.org/maven2/com/example/artifact/1.0/artifact-1.0.pom")
-                        .get())
-                .as("because the URL should be parsed into group and artifact")
-                .isEqualTo("com.example:artifact");
-
-        assertThat(explorer.extractGroupAndArtifactFromUrl(
-                                projectUrls, "https://jcenter.bintray.com/com/example/artifact/1.0/artifact-1.0.jar")
-                        .get())
-                .as("because the URL should be parsed into group and artifact")
-                .isEqualTo("com.example:artifact");
-        assertThat(explorer.extractGroupAndArtifactFromUrl(
-                        projectUrls, "https://not.vaild.com/example/artifact/1.0/artifact-1.0.jar"))
-                .as("Expected the URL to not match any project URL, resulting in an empty Optional")
-                .isEmpty();
-        assertThat(explorer.extractGroupAndArtifactFromUrl(projectUrls, "https://jcenter.bintray.com/com/example"))
-                .as("Could not find second to last slash, resulting in an empty Optional")
+        Set<String> urls = new HashSet<>();
+        BinFileScanner.scanResourceUrls(tempFile.toPath(), 0, urls::add);
+
+        assertThat(urls)
+                .as("because only https URLs to poms and jars are extracted")
+                .containsOnly("https://repo.one/a/b/1.0/b-1.0.pom", "https://repo.one/c/d/2.0/d-2.0.jar");
+    }
+
+    @Test
+    void test_scans_urls_after_a_printable_length(@TempDir Path cacheDir) throws IOException {
+        Path binFile = cacheDir.resolve("test.bin");
+        // Kryo writes the length of a long string as 0xc0 or more, which is a printable ISO-8859-1 character
+        Files.writeString(
+                binFile, "\u0001\u00e3https://repo.one/a/b/1.0/b-1.0.pom\u0001\u00c4", StandardCharsets.ISO_8859_1);
+
+        Set<String> urls = new HashSet<>();
+        long resumeOffset = BinFileScanner.scanResourceUrls(binFile, 0, urls::add);
+
+        assertThat(urls).containsOnly("https://repo.one/a/b/1.0/b-1.0.pom");
+        assertThat(resumeOffset)
+                .as("because the URL after the length at the end of the file may still be being written")
+                .isEqualTo(Files.size(binFile) - 1);
+
+        Files.writeString(
+                binFile,
+                "https://repo.one/c/d/2.0/d-2.0.jar\u0001",
+                StandardCharsets.ISO_8859_1,
+                StandardOpenOption.APPEND);
+        urls.clear();
+        BinFileScanner.scanResourceUrls(binFile, resumeOffset, urls::add);
+
+        assertThat(urls).containsOnly("https://repo.one/c/d/2.0/d-2.0.jar");
+    }
+
+    @Test
+    void test_parallel_scan_matches_sequential_scan(@TempDir Path cacheDir) throws IOException {
+        Random random = new Random(42);
+        List<Path> binFiles = List.of(cacheDir.resolve("one.bin"), cacheDir.resolve("two.bin"));
+        for (Path binFile : binFiles) {
+            StringBuilder contents = new StringBuilder();
+            for (int i = 0; i < 5000; i++) {
+                contents.append(String.format(
+                        "https://repo.one/group%d/name%d/1.%d/name-1.0.%s",
+                        random.nextInt(50), random.nextInt(100), i, random.nextBoolean() ? "pom" : "jar"));
+                contents.append((char) random.nextInt(0x20));
+                contents.append("x".repeat(random.nextInt(40)));
+                contents.append((char) random.nextInt(0x20));
+            }
+            Files.writeString(binFile, contents, StandardCharsets.ISO_8859_1);
+        }
+
+        Set<String> sequential = new HashSet<>();
+        for (Path binFile : binFiles) {
+            BinFileScanner.scanStrings(
+                    binFile,
+                    string -> {
+                        if (BinFileScanner.isResourceUrl(string)) {
+                            sequential.add(string);
+                        }
+                    },
+                    () -> {});
+        }
+
+        Set<String> parallel = ConcurrentHashMap.newKeySet();
+        Map<Path, Long> resumeOffsets = GradleCacheExplorer.extractResourceUrlsInParallel(
+                ForkJoinPool.commonPool(),
+                Map.of(binFiles.get(0), 0L, binFiles.get(1), 0L),
+                1000,
+                (binFile, url) -> parallel.add(url),
+                () -> {});
+
+        assertThat(parallel)
+                .as("because splitting the files into ranges must not lose or mangle any URL")
+                .hasSize(10000)
+                .isEqualTo(sequential);
+        assertThat(resumeOffsets).containsOnlyKeys(binFiles);
+    }
+
+    @Test
+    void test_reload_reads_only_new_entries(@TempDir Path cacheDir) throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Path binFile = writeBinFile(cacheDir, "https://example.one/group/nameOne/1.0/nameOne-1.0.pom");
+
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), MoreExecutors.directExecutor());
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .containsOnly("*", "nameOne");
+
+        Files.writeString(
+                binFile,
+                "https://example.one/group/nameTwo/1.0/nameTwo-1.0.pom\u0001",
+                StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        explorer.loadCache();
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because entries appended to the bin file are merged into the index")
+                .containsOnly("*", "nameOne", "nameTwo");
+
+        writeBinFile(cacheDir, "https://example.one/group/nameTwo/1.0/nameTwo-1.0.pom");
+        explorer.loadCache();
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because a bin file that shrank causes the index to be rebuilt")
+                .containsOnly("*", "nameTwo");
+    }
+
+    @Test
+    void test_starts_from_persisted_index(@TempDir Path cacheDir, @TempDir Path systemDir) throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Path indexFile = systemDir.resolve("index.bin");
+        Path binFile = writeBinFile(cacheDir, "https://example.one/group/nameOne/1.0/nameOne-1.0.pom");
+        FileTime lastModified = Files.getLastModifiedTime(binFile);
+
+        new GradleCacheExplorer(cacheDir, Optional.of(indexFile), MoreExecutors.directExecutor());
+        assertThat(indexFile).exists();
+
+        // Same size and modification time, so the bin file is not scanned again
+        writeBinFile(cacheDir, "https://example.one/group/nameTwo/1.0/nameTwo-1.0.pom");
+        Files.setLastModifiedTime(binFile, lastModified);
+        explorer = new GradleCacheExplorer(cacheDir, Optional.of(indexFile), MoreExecutors.directExecutor());
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because the index is read from the persisted snapshot")
+                .containsOnly("*", "nameOne");
+
+        Files.setLastModifiedTime(binFile, FileTime.fromMillis(lastModified.toMillis() + 1000));
+        explorer = new GradleCacheExplorer(cacheDir, Optional.of(indexFile), MoreExecutors.directExecutor());
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because the bin file no longer matches its fingerprint")
+                .containsOnly("*", "nameOne", "nameTwo");
+    }
+
+    @Test
+    void test_index_is_built_in_the_background(@TempDir Path cacheDir) throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        writeBinFile(cacheDir, "https://example.one/group/nameOne/1.0/nameOne-1.0.pom");
+        List<Runnable> backgroundTasks = new ArrayList<>();
+
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), backgroundTasks::add);
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because nothing is scanned on the constructing thread")
                 .isEmpty();
-        assertThat(explorer.extractGroupAndArtifactFromUrl(projectUrls, ""))
-                .as("Empty passed in so empty returned")
+
+        backgroundTasks.forEach(Runnable::run);
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because the index is published once the background scan finishes")
+                .containsOnly("*", "nameOne");
+    }
+
+    @Test
+    void test_reload_requests_are_coalesced(@TempDir Path cacheDir) throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Path binFile = writeBinFile(cacheDir, "https://example.one/group/nameOne/1.0/nameOne-1.0.pom");
+        List<Runnable> scans = new ArrayList<>();
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), scans::add);
+        scans.remove(0).run();
+
+        Files.writeString(
+                binFile, "https://example.one/group/nameTwo/1.0/nameTwo-1.0.pom\u0001", StandardOpenOption.APPEND);
+        explorer.requestReload();
+        explorer.requestReload();
+        explorer.requestReload();
+        assertThat(scans)
+                .as("because requests made before the scan starts share a single scan")
+                .hasSize(1);
+
+        Runnable scan = scans.remove(0);
+        scan.run();
+        explorer.requestReload();
+        assertThat(scans)
+                .as("because a request after the scan started needs a new scan")
+                .hasSize(1);
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .containsOnly("*", "nameOne", "nameTwo");
+    }
+
+    @Test
+    void test_watcher_reports_bin_file_changes(@TempDir Path cacheDir) throws Exception {
+        Path binFile = writeBinFile(cacheDir);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch changed = new CountDownLatch(1);
+        BinFileWatcher watcher = new BinFileWatcher(cacheDir, Duration.ofMillis(100), scheduler, changed::countDown);
+        try {
+            // Wait for the first poll to register the folders before changing anything
+            scheduler.schedule(() -> {}, 1, TimeUnit.SECONDS).get();
+            Files.writeString(
+                    binFile, "https://example.one/group/nameOne/1.0/nameOne-1.0.pom\u0001", StandardOpenOption.APPEND);
+
+            assertThat(changed.await(30, TimeUnit.SECONDS))
+                    .as("because writing to a bin file is reported once it settles")
+                    .isTrue();
+        } finally {
+            watcher.close();
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_lists_versions_from_files_cache(@TempDir Path cacheDir) throws IOException {
+        Path artifactDir = cacheDir.resolve("files-2.1/com.example/artifact");
+        Files.createDirectories(artifactDir.resolve("1.0"));
+        Files.createDirectories(artifactDir.resolve("1.1"));
+        Files.createDirectories(cacheDir.resolve("files-2.1/com.example/other/2.0"));
+
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), MoreExecutors.directExecutor());
+
+        assertThat(explorer.getCachedVersions(DependencyGroup.fromString("com.example"), DependencyName.of("artifact")))
+                .as("because every version directory of the artifact is a downloaded version")
+                .containsOnly("1.0", "1.1");
+        assertThat(explorer.getCachedVersions(DependencyGroup.fromString("com.example"), DependencyName.of("missing")))
+                .as("because nothing has been downloaded for the artifact")
                 .isEmpty();
     }
 
+    @Test
+    void test_lists_versions_again_only_when_the_cache_changed(@TempDir Path cacheDir) throws IOException {
+        Path binFile = writeBinFile(cacheDir, "https://example.one/com/example/artifact/1.0/artifact-1.0.pom");
+        Path filesCache = cacheDir.resolve("files-2.1");
+        Files.createDirectories(filesCache.resolve("com.example/artifact/1.0"));
+        FileTime filesCacheModified = Files.getLastModifiedTime(filesCache);
+        DependencyGroup group = DependencyGroup.fromString("com.example");
+
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), MoreExecutors.directExecutor());
+        Files.createDirectories(filesCache.resolve("com.example/artifact/1.1"));
+        explorer.loadCache();
+
+        assertThat(explorer.getCachedVersions(group, DependencyName.of("artifact")))
+                .as("because neither the bin files nor the files-2.1 folder changed")
+                .containsOnly("1.0");
+
+        Files.writeString(
+                binFile,
+                "\u0001https://example.one/com/example/artifact/1.1/artifact-1.1.pom\u0001",
+                StandardOpenOption.APPEND);
+        explorer.loadCache();
+
+        assertThat(explorer.getCachedVersions(group, DependencyName.of("artifact")))
+                .as("because Gradle records every download in the bin files")
+                .containsOnly("1.0", "1.1");
+
+        Files.createDirectories(filesCache.resolve("com.other/other/2.0"));
+        Files.setLastModifiedTime(filesCache, FileTime.fromMillis(filesCacheModified.toMillis() + 1000));
+        explorer.loadCache();
+
+        assertThat(explorer.getCachedVersions(DependencyGroup.fromString("com.other"), DependencyName.of("other")))
+                .as("because groups added to or removed from the files-2.1 folder change its modification time")
+                .containsOnly("2.0");
+    }
+
+    @Test
+    void test_merges_cache_roots_and_rebuilds_only_the_changed_one(@TempDir Path userHome, @TempDir Path readOnly)
+            throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Path userHomeBin = writeBinFile(
+                userHome,
+                "https://example.one/group/nameOne/1.0/nameOne-1.0.pom",
+                "https://example.one/group/shared/1.0/shared-1.0.pom");
+        Path readOnlyBin = writeBinFile(
+                readOnly,
+                "https://example.one/group/nameTwo/1.0/nameTwo-1.0.pom",
+                "https://example.one/group/shared/2.0/shared-2.0.pom");
+        Files.createDirectories(userHome.resolve("files-2.1/group/shared/1.0"));
+        Files.createDirectories(readOnly.resolve("files-2.1/group/shared/2.0"));
+
+        explorer = new GradleCacheExplorer(
+                () -> Set.of(userHome, readOnly), Optional.empty(), MoreExecutors.directExecutor(), false);
+
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because the artifacts of both roots are merged into one index")
+                .containsOnly("*", "nameOne", "nameTwo", "shared");
+        assertThat(explorer.getCachedVersions(DependencyGroup.fromString("group"), DependencyName.of("shared")))
+                .containsOnly("1.0", "2.0");
+
+        // Same size and modification time, so only a rescan of the whole root would notice the new contents
+        FileTime userHomeModified = Files.getLastModifiedTime(userHomeBin);
+        writeBinFile(
+                userHome,
+                "https://example.one/group/nameSix/1.0/nameSix-1.0.pom",
+                "https://example.one/group/shared/1.0/shared-1.0.pom");
+        Files.setLastModifiedTime(userHomeBin, userHomeModified);
+        writeBinFile(readOnly, "https://example.one/group/nameTwo/1.0/nameTwo-1.0.pom");
+        explorer.loadCache();
+
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because only the root whose bin file shrank is rebuilt")
+                .containsOnly("*", "nameOne", "nameTwo", "shared");
+    }
+
+    @Test
+    void test_finds_cache_roots_of_every_gradle_user_home() {
+        assertThat(GradleCacheRoots.fromLocations(
+                        List.of("/home/user/.gradle", "/opt/gradle-home", "/home/user/.gradle/", " "),
+                        Optional.of("/mnt/shared-cache")))
+                .as("because a user home keeps its cache under caches, the read-only cache does not, and duplicates "
+                        + "and blanks are dropped")
+                .containsExactly(
+                        Path.of("/home/user/.gradle/caches/modules-2"),
+                        Path.of("/opt/gradle-home/caches/modules-2"),
+                        Path.of("/mnt/shared-cache/modules-2"));
+    }
+
+    @Test
+    void test_extract_group_artifact_from_url_correctly() {
+        Set<String> projectUrls = Set.of("https://repo.maven.apache.org/maven2/", "https://jcenter.bintray.com/");
+        Set<String> cache = Set.of(
+                "https://repo.maven.apache.org/maven2/com/example/artifact/1.0/artifact-1.0.pom",
+                "https://jcenter.bintray.com/com/example/other/1.0/other-1.0.jar",
+                "https://not.vaild.com/example/unlisted/1.0/unlisted-1.0.jar",
+                "https://jcenter.bintray.com/com/example",
+                "");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getCompletions(projectUrls, DependencyGroup.fromString(""), false))
+                .as("because only URLs below a project URL with a version and file after the artifact are parsed")
+                .containsOnly("com.example:artifact", "com.example:other", "com.example:*");
+    }
+
     @Test
     void test_get_completion_no_match() {
         Set<String> repoUrls = Set.of("https://example.one/", "https://example.two/");
@@ -186,6 +516,286 @@ class GradleCacheExplorerTest {
                 .containsOnly("*", "nameOne", "nameTwo");
     }
 
+    @Test
+    void test_package_completion_only_suggests_artifacts_directly_in_group() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = Set.of(
+                "https://example.one/same/group/nameOne/version/artifact.pom",
+                "https://example.one/same/group/nested/nameTwo/version/artifact.pom");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("same.group"), true))
+                .as("Artifacts in nested groups are not package names of this group")
+                .containsOnly("*", "nameOne");
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("same.group"), false))
+                .as("Nested groups are suggested when completing a group part")
+                .containsOnly("*", "nameOne", "nested:nameTwo", "nested:*");
+    }
+
+    @Test
+    void test_group_must_match_whole_segments() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = Set.of("https://example.one/same/groupie/nameOne/version/artifact.pom");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("same.group"), false))
+                .as("A group is only matched on complete segments")
+                .isEmpty();
+    }
+
+    @Test
+    void test_glob_matches_artifacts_the_way_versions_props_does() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = Set.of(
+                "https://example.one/com/fasterxml/jackson/core/jackson-databind/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/jackson/core/jackson-core/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/jackson/module/kotlin/jackson-module-kotlin/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/jackson/datatype/guava/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/jackson/jackson-bom/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/classmate/1.5.1/artifact.pom");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getGlobMatches(repoUrls, "com.fasterxml.jackson.*:jackson-*"))
+                .as("because a star matches any characters, dots included, but not the group itself")
+                .containsOnly(
+                        "com.fasterxml.jackson.core:jackson-databind",
+                        "com.fasterxml.jackson.core:jackson-core",
+                        "com.fasterxml.jackson.module.kotlin:jackson-module-kotlin");
+        assertThat(explorer.getGlobMatches(repoUrls, "com.fasterxml.jackson.core:jackson-d*"))
+                .containsOnly("com.fasterxml.jackson.core:jackson-databind");
+        assertThat(explorer.getGlobMatches(repoUrls, "com.fasterxml.jackson.core:*-core"))
+                .containsOnly("com.fasterxml.jackson.core:jackson-core");
+        assertThat(explorer.countGlobMatches(repoUrls, "com.fasterxml.jackson.*"))
+                .isEqualTo(4);
+        assertThat(explorer.countGlobMatches(repoUrls, "com.fasterxml*")).isEqualTo(6);
+        assertThat(explorer.countGlobMatches(repoUrls, "com.fasterxml:classmate"))
+                .isEqualTo(1);
+        assertThat(explorer.countGlobMatches(repoUrls, "com.fasterxml.jackson.core:jackson"))
+                .isZero();
+    }
+
+    @Test
+    void test_glob_only_visits_artifacts_below_its_literal_prefix() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            cache.add("https://example.one/org/other" + i + "/name/1.0/artifact.pom");
+        }
+        cache.add("https://example.one/com/fasterxml/jackson/core/jackson-databind/2.16.0/artifact.pom");
+        cache.add("https://example.one/com/fasterxml/jackson/core/jackson-core/2.16.0/artifact.pom");
+        AtomicInteger checks = new AtomicInteger();
+
+        explorer = new GradleCacheExplorer(cache, checks::incrementAndGet);
+
+        assertThat(explorer.getGlobMatches(repoUrls, "com.fasterxml.jackson.*:jackson-*"))
+                .hasSize(2);
+        assertThat(checks)
+                .as("because the other groups are ruled out by the literal prefix without being visited")
+                .hasValue(2);
+    }
+
+    @Test
+    void test_package_completion_after_a_glob_lists_the_artifacts_it_covers() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = Set.of(
+                "https://example.one/com/fasterxml/jackson/core/jackson-databind/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/jackson/module/kotlin/jackson-module-kotlin/2.16.0/artifact.pom",
+                "https://example.one/com/fasterxml/classmate/1.5.1/artifact.pom");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("com.fasterxml.jackson.*"), true))
+                .containsOnly("*", "jackson-databind", "jackson-module-kotlin");
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("com.fasterxml.*.core"), true))
+                .containsOnly("*", "jackson-databind");
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("com.fasterxml.jackson.*"), false))
+                .as("A star may stand for any number of group parts, so the next one is not suggested")
+                .isEmpty();
+    }
+
+    @Test
+    void test_completions_follow_repository_changes() {
+        Set<String> cache = Set.of(
+                "https://example.one/exampleOne/nameOne/version/artifact.pom",
+                "https://example.two/exampleTwo/nameTwo/version/artifact.pom");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getCompletions(Set.of("https://example.one/"), DependencyGroup.fromString(""), false))
+                .containsOnly("exampleOne:nameOne", "exampleOne:*");
+        assertThat(explorer.getCompletions(Set.of("https://example.two/"), DependencyGroup.fromString(""), false))
+                .as("A different set of repositories gets its own projection of the cache")
+                .containsOnly("exampleTwo:nameTwo", "exampleTwo:*");
+        assertThat(explorer.getCompletions(Set.of("https://example.one/"), DependencyGroup.fromString(""), false))
+                .containsOnly("exampleOne:nameOne", "exampleOne:*");
+    }
+
+    @Test
+    void test_fuzzy_completion_matches_subsequences_across_segments() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = Set.of(
+                "https://example.one/com/fasterxml/jackson/core/jackson-databind/2.0/jackson-databind-2.0.pom",
+                "https://example.one/com/fasterxml/jackson/core/jackson-core/2.0/jackson-core-2.0.pom",
+                "https://example.one/com/google/guava/guava/33.0/guava-33.0.jar");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString(""), false, "jackdatabind", 100))
+                .as("because the query is a subsequence of the artifact across the group and artifact")
+                .containsExactly("com.fasterxml.jackson.core:jackson-databind");
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString(""), false, "guava", 100))
+                .as("because jackson does not contain the query")
+                .containsOnly("com.google.guava:guava", "com.google.guava:*");
+        assertThat(explorer.getFuzzyCompletions(
+                        repoUrls, DependencyGroup.fromString("com.fasterxml.jackson.core"), true, "jcore", 100))
+                .as("because package names are matched the same way")
+                .containsExactly("jackson-core");
+    }
+
+    @Test
+    void test_fuzzy_completion_ranks_word_starts_first() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = Set.of(
+                "https://example.one/org/example/xaxb/1.0/xaxb-1.0.pom",
+                "https://example.one/org/example/alpha-beta/1.0/alpha-beta-1.0.pom");
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("org"), false, "ab", 100))
+                .as("because a match at the start of a word beats a shorter completion")
+                .containsExactly("example:alpha-beta", "example:xaxb");
+    }
+
+    @Test
+    void test_fuzzy_completion_ranks_popular_artifacts_first(@TempDir Path cacheDir) throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        writeBinFile(
+                cacheDir,
+                "https://example.one/group/aardvark/1.0/aardvark-1.0.pom",
+                "https://example.one/group/zebra/1.0/zebra-1.0.pom");
+        Path zebraDir = cacheDir.resolve("files-2.1/group/zebra");
+        Files.createDirectories(zebraDir.resolve("1.0"));
+        Files.createDirectories(zebraDir.resolve("1.1"));
+        Path aardvarkDir = Files.createDirectories(cacheDir.resolve("files-2.1/group/aardvark/1.0"));
+        Files.setLastModifiedTime(aardvarkDir, FileTime.fromMillis(0));
+
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), MoreExecutors.directExecutor());
+
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("group"), true, "", 100))
+                .as("because the artifact with more, and more recently downloaded, versions is used more, and the star "
+                        + "is as popular as the group's most popular artifact")
+                .containsExactly("*", "zebra", "aardvark");
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("group"), true, "a", 100))
+                .as("because popularity only breaks ties between equally good matches")
+                .containsExactly("aardvark", "zebra");
+    }
+
+    @Test
+    void test_fuzzy_completion_returns_best_matches_up_to_limit() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = IntStream.range(0, 1000)
+                .mapToObj(i -> String.format("https://example.one/group/name%03d/1.0/name%03d-1.0.pom", i, i))
+                .collect(Collectors.toSet());
+
+        explorer = new GradleCacheExplorer(cache);
+
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("group"), true, "nm", 3))
+                .as("because only the best matches up to the limit are returned")
+                .containsExactly("name000", "name001", "name002");
+        assertThat(explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("group"), true, "", 2))
+                .containsExactly("*", "name000");
+    }
+
+    @Test
+    void test_completion_stops_at_the_first_check_after_cancellation() {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        Set<String> cache = IntStream.range(0, 50_000)
+                .mapToObj(
+                        i -> String.format("https://example.one/group/sub%d/name%d/1.0/name%d-1.0.pom", i % 250, i, i))
+                .collect(Collectors.toSet());
+        AtomicInteger checksLeft = new AtomicInteger(Integer.MAX_VALUE);
+        explorer = new GradleCacheExplorer(cache, () -> {
+            if (checksLeft.decrementAndGet() < 0) {
+                throw new ProcessCanceledException();
+            }
+        });
+
+        checksLeft.set(100);
+        assertThatThrownBy(() -> explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), false))
+                .isInstanceOf(ProcessCanceledException.class);
+        assertThat(checksLeft)
+                .as("because collecting the completions stops at the first check after the IDE cancelled it")
+                .hasValue(-1);
+
+        checksLeft.set(Integer.MAX_VALUE);
+        explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("group"), false, "nm", 100);
+        checksLeft.set(10);
+        assertThatThrownBy(() ->
+                        explorer.getFuzzyCompletions(repoUrls, DependencyGroup.fromString("group"), false, "nm9", 100))
+                .isInstanceOf(ProcessCanceledException.class);
+        assertThat(checksLeft)
+                .as("because matching against the already indexed completions stops just as promptly")
+                .hasValue(-1);
+    }
+
+    @Test
+    void test_scan_stops_at_the_first_check_after_cancellation(@TempDir Path cacheDir) throws IOException {
+        Path binFile = cacheDir.resolve("large.bin");
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 400_000; i++) {
+            contents.append(String.format("\u0001https://repo.one/group/name%d/1.0/name%d-1.0.pom", i, i));
+        }
+        Files.writeString(binFile, contents, StandardCharsets.ISO_8859_1);
+        AtomicInteger checksLeft = new AtomicInteger(4);
+        Set<String> urls = ConcurrentHashMap.newKeySet();
+
+        assertThatThrownBy(() -> GradleCacheExplorer.extractResourceUrlsInParallel(
+                        ForkJoinPool.commonPool(),
+                        Map.of(binFile, 0L),
+                        1 << 20,
+                        (scannedFile, url) -> urls.add(url),
+                        () -> {
+                            if (checksLeft.decrementAndGet() < 0) {
+                                throw new ProcessCanceledException();
+                            }
+                        }))
+                .isInstanceOf(ProcessCanceledException.class);
+        assertThat(urls)
+                .as("because no range of the file is read after the scan was cancelled")
+                .hasSizeLessThan(400_000 / 4);
+    }
+
+    @Test
+    void test_scan_on_a_shut_down_pool_is_cancelled(@TempDir Path cacheDir) throws IOException {
+        Path binFile = cacheDir.resolve("one.bin");
+        Files.writeString(binFile, "\u0001https://repo.one/group/name/1.0/name-1.0.pom\u0001");
+        ForkJoinPool pool = new ForkJoinPool(1);
+        pool.shutdown();
+
+        assertThatThrownBy(() -> GradleCacheExplorer.extractResourceUrlsInParallel(
+                        pool, Map.of(binFile, 0L), 1 << 20, (scannedFile, url) -> {}, () -> {}))
+                .as("because the pool is only shut down once the explorer is disposed")
+                .isInstanceOf(ProcessCanceledException.class);
+    }
+
+    @Test
+    void test_disposing_cancels_the_scan(@TempDir Path cacheDir) throws IOException {
+        Set<String> repoUrls = Set.of("https://example.one/");
+        writeBinFile(cacheDir, "https://example.one/group/nameOne/1.0/nameOne-1.0.pom");
+        List<Runnable> scans = new ArrayList<>();
+        explorer = new GradleCacheExplorer(cacheDir, Optional.empty(), scans::add);
+
+        explorer.dispose();
+        scans.forEach(Runnable::run);
+
+        assertThat(explorer.getCompletions(repoUrls, DependencyGroup.fromString("group"), true))
+                .as("because the scan was cancelled before it read the bin file")
+                .isEmpty();
+    }
+
     @Test
     public void test_if_adds_star() {
         String result = "group1:artifact1";
@@ -205,4 +815,15 @@ class GradleCacheExplorerTest {
 
         assertThat(actual).containsExactlyInAnyOrderElementsOf(expected);
     }
+
+    /** Writes a {@code resource-at-url.bin} into the cache root holding the URLs, each after a control character. */
+    private static Path writeBinFile(Path root, String... urls) throws IOException {
+        Path binFile = Files.createDirectories(root.resolve("metadata-2.106")).resolve("resource-at-url.bin");
+        StringBuilder contents = new StringBuilder();
+        for (String url : urls) {
+            contents.append('\u0001').append(url);
+        }
+        Files.writeString(binFile, contents.append('\u0001'));
+        return binFile;
+    }
 }
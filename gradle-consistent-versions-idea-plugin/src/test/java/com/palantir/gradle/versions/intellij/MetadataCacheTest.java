@@ -0,0 +1,217 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.Iterables;
+import com.palantir.gradle.versions.intellij.MetadataCache.Fetcher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Runs against a local HTTP server that stands in for a Maven repository and honours conditional requests. */
+class MetadataCacheTest {
+    private static final String METADATA_PATH = "/com/example/artifact/maven-metadata.xml";
+    /** Fetches straight through ContentsUtil and is never cancelled, so only the server decides each response. */
+    static final Fetcher FETCHER = (url, requestHeaders) -> {
+        try {
+            return Optional.of(ContentsUtil.fetch(new URL(url), requestHeaders, () -> false));
+        } catch (IOException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    };
+
+    private final List<Integer> statusCodes = new ArrayList<>();
+    private HttpServer server;
+    private String body = metadata("1.0", "1.1");
+    private Optional<String> etag = Optional.of("\"v1\"");
+    private Optional<String> lastModified = Optional.empty();
+    private int status = 200;
+
+    @BeforeEach
+    void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(METADATA_PATH, this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void after() {
+        server.stop(0);
+    }
+
+    @Test
+    void test_reuses_the_stored_copy_while_the_etag_matches(@TempDir Path cacheDir) {
+        MetadataCache cache = new MetadataCache(cacheDir);
+
+        assertThat(cache.get(url(), FETCHER)).hasValue(body);
+        assertThat(cache.get(url(), FETCHER))
+                .as("because the stored copy is revalidated rather than downloaded again")
+                .hasValue(body);
+        assertThat(new MetadataCache(cacheDir).get(url(), FETCHER))
+                .as("because the copy is kept on disk")
+                .hasValue(body);
+        assertThat(statusCodes).containsExactly(200, 304, 304);
+
+        body = metadata("1.0", "1.1", "1.2");
+        etag = Optional.of("\"v2\"");
+        assertThat(cache.get(url(), FETCHER))
+                .as("because a changed file is downloaded again")
+                .hasValue(body);
+        assertThat(statusCodes).containsExactly(200, 304, 304, 200);
+    }
+
+    @Test
+    void test_revalidates_with_last_modified(@TempDir Path cacheDir) {
+        MetadataCache cache = new MetadataCache(cacheDir);
+        etag = Optional.empty();
+        lastModified = Optional.of("Wed, 21 Oct 2015 07:28:00 GMT");
+
+        cache.get(url(), FETCHER);
+        assertThat(cache.get(url(), FETCHER)).hasValue(body);
+        assertThat(statusCodes).containsExactly(200, 304);
+    }
+
+    @Test
+    void test_does_not_store_responses_that_cannot_be_revalidated(@TempDir Path cacheDir) {
+        MetadataCache cache = new MetadataCache(cacheDir);
+        etag = Optional.empty();
+
+        cache.get(url(), FETCHER);
+        assertThat(cache.get(url(), FETCHER)).hasValue(body);
+        assertThat(statusCodes).containsExactly(200, 200);
+    }
+
+    @Test
+    void test_uses_the_stored_copy_only_while_the_file_exists(@TempDir Path cacheDir) {
+        MetadataCache cache = new MetadataCache(cacheDir);
+        String stored = body;
+        cache.get(url(), FETCHER);
+
+        assertThat(cache.get(url(), (url, requestHeaders) -> Optional.empty()))
+                .as("because the stored copy is used when the repository cannot be reached")
+                .hasValue(stored);
+
+        status = 503;
+        assertThat(cache.get(url(), FETCHER))
+                .as("because an error from the repository does not mean the file is gone")
+                .hasValue(stored);
+        status = 200;
+        assertThat(cache.get(url(), FETCHER)).hasValue(stored);
+        assertThat(statusCodes)
+                .as("because the stored copy and its validators are kept through the error")
+                .containsExactly(200, 503, 304);
+
+        status = 410;
+        assertThat(cache.get(url(), FETCHER)).isEmpty();
+        assertThat(cache.get(url(), (url, requestHeaders) -> Optional.empty())).isEmpty();
+
+        status = 200;
+        cache.get(url(), FETCHER);
+        status = 404;
+        assertThat(cache.get(url(), FETCHER)).isEmpty();
+        assertThat(cache.get(url(), (url, requestHeaders) -> Optional.empty()))
+                .as("because the stored copy is dropped once the file is gone")
+                .isEmpty();
+    }
+
+    @Test
+    void test_deletes_files_not_used_for_a_month(@TempDir Path cacheDir) throws IOException {
+        MetadataCache cache = new MetadataCache(cacheDir);
+        cache.get(url(), FETCHER);
+        Path stored;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            stored = Iterables.getOnlyElement(files.collect(Collectors.toList()));
+        }
+        Path abandoned = Files.writeString(cacheDir.resolve("abandoned.bin"), "");
+        FileTime twoMonthsAgo = FileTime.from(Instant.now().minus(Duration.ofDays(60)));
+        Files.setLastModifiedTime(stored, twoMonthsAgo);
+        Files.setLastModifiedTime(abandoned, twoMonthsAgo);
+
+        assertThat(cache.get(url(), (url, requestHeaders) -> Optional.empty()))
+                .as("because files are only deleted when a session starts using the cache")
+                .hasValue(body);
+        assertThat(new MetadataCache(cacheDir).get(url(), (url, requestHeaders) -> Optional.empty()))
+                .as("because using the stored copy marked it as used")
+                .hasValue(body);
+        assertThat(abandoned).doesNotExist();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean notModified = etag.isPresent()
+                ? etag.get().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))
+                : lastModified.isPresent()
+                        && lastModified
+                                .get()
+                                .equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+        int statusCode = status != 200 ? status : notModified ? 304 : 200;
+        statusCodes.add(statusCode);
+
+        etag.ifPresent(value -> exchange.getResponseHeaders().add("ETag", value));
+        lastModified.ifPresent(value -> exchange.getResponseHeaders().add("Last-Modified", value));
+        if (statusCode != 200) {
+            exchange.sendResponseHeaders(statusCode, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private String url() {
+        try {
+            return new URL("http", "localhost", server.getAddress().getPort(), METADATA_PATH).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String metadata(String... versions) {
+        StringBuilder metadata = new StringBuilder("<metadata><versioning><versions>");
+        for (String version : versions) {
+            metadata.append("<version>").append(version).append("</version>");
+        }
+        return metadata.append("</versions></versioning></metadata>").toString();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.palantir.gradle.versions.intellij.MetadataParser.ParsedMetadata;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Test;
+
+class MetadataParserTest {
+
+    @Test
+    void test_reads_every_version_of_large_metadata() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n"
+                + "  <groupId>com.example</groupId>\n  <artifactId>artifact</artifactId>\n  <versioning>\n"
+                + "    <latest>49.99.0</latest>\n    <release>49.98.0</release>\n    <versions>\n");
+        List<String> versions = new ArrayList<>();
+        for (int major = 0; major < 50; major++) {
+            for (int minor = 0; minor < 100; minor++) {
+                versions.add(major + "." + minor + ".0");
+                xml.append("      <version>")
+                        .append(major)
+                        .append('.')
+                        .append(minor)
+                        .append(".0</version>\n");
+            }
+        }
+        xml.append("    </versions>\n    <lastUpdated>20240101000000</lastUpdated>\n  </versioning>\n</metadata>\n");
+
+        ParsedMetadata parsed = MetadataParser.parse(new StringReader(xml.toString()));
+
+        assertThat(parsed.versions()).hasSize(5000).containsExactlyElementsOf(versions);
+        assertThat(parsed.latest()).contains("49.99.0");
+        assertThat(parsed.release()).contains("49.98.0");
+        assertThat(parsed.lastUpdated()).contains("20240101000000");
+    }
+
+    @Test
+    void test_ignores_elements_outside_the_versioning() throws Exception {
+        ParsedMetadata parsed = MetadataParser.parse(new StringReader("<metadata>"
+                + "<plugins><plugin><name>Plugin</name><version>9.9</version></plugin></plugins>"
+                + "<versioning><snapshot><latest>0.1</latest></snapshot>"
+                + "<versions><version>1.0</version><extra><version>8.8</version></extra></versions>"
+                + "</versioning></metadata>"));
+
+        assertThat(parsed.versions()).containsExactly("1.0");
+        assertThat(parsed.latest())
+                .as("because metadata without a latest version is still read")
+                .isEmpty();
+    }
+
+    @Test
+    void test_rejects_malformed_metadata() {
+        assertThatThrownBy(() -> MetadataParser.parse(
+                        new StringReader("<metadata><versioning><versions><version>1.0</versions>")))
+                .isInstanceOf(XMLStreamException.class);
+    }
+}
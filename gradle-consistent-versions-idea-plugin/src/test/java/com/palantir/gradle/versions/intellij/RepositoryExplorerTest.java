@@ -0,0 +1,220 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs against a local HTTP server that stands in for a Maven repository, fetching on the test thread so no running IDE
+ * is needed.
+ */
+class RepositoryExplorerTest {
+    private final Map<String, String> pages = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicReference<Duration> versionCacheTtl = new AtomicReference<>(Duration.ofMinutes(5));
+    private HttpServer server;
+    private RepositoryExplorer explorer;
+
+    @BeforeEach
+    void before(@TempDir Path metadataDir) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        explorer = new RepositoryExplorer(
+                new MetadataCache(metadataDir), MetadataCacheTest.FETCHER, () -> {}, nanos::get, versionCacheTtl::get);
+    }
+
+    @AfterEach
+    void after() {
+        server.stop(0);
+    }
+
+    @Test
+    void test_missing_folders_are_only_requested_again_once_expired() {
+        assertThat(listFolders("com.missing")).isEmpty();
+        assertThat(listFolders("com.missing")).isEmpty();
+        assertThat(requests).containsExactly("/com/missing/");
+
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertThat(listFolders("com.missing")).isEmpty();
+        assertThat(requests)
+                .as("because missing folders are only remembered for a short while")
+                .containsExactly("/com/missing/", "/com/missing/");
+    }
+
+    @Test
+    void test_nothing_below_a_missing_folder_is_requested() {
+        listFolders("com.missing");
+        listFolders("com.missing.deeper");
+        listFolders("com.missing.deeper.still");
+
+        assertThat(requests).containsExactly("/com/missing/");
+    }
+
+    @Test
+    void test_missing_folders_only_hide_folders_in_the_same_repository() {
+        pages.put("/releases/com/", "<html><a href=\"example/\">example/</a>");
+
+        assertThat(listFolders("releases")).isEmpty();
+        assertThat(explorer.getGroupPartOrPackageName(DependencyGroup.fromString("com"), repository() + "releases/"))
+                .as("because another repository on the same host may live below the missing folder")
+                .containsOnly(GroupPartOrPackageName.of("example"));
+        assertThat(requests).containsExactly("/releases/", "/releases/com/");
+    }
+
+    @Test
+    void test_empty_listings_are_not_requested_again() {
+        pages.put("/com/empty/", "<html><a href=\"../\">../</a><a href=\"maven-metadata.xml\">maven-metadata.xml</a>");
+        pages.put("/com/empty/child/", "<html><a href=\"grandchild/\">grandchild/</a>");
+
+        assertThat(listFolders("com.empty")).isEmpty();
+        assertThat(listFolders("com.empty")).isEmpty();
+        assertThat(listFolders("com.empty.child")).containsOnly(GroupPartOrPackageName.of("grandchild"));
+        assertThat(requests)
+                .as("because an empty listing says nothing about the folders below it")
+                .containsExactly("/com/empty/", "/com/empty/child/");
+    }
+
+    @Test
+    void test_missing_metadata_is_not_requested_again() {
+        pages.put(
+                "/com/example/artifact/maven-metadata.xml",
+                "<metadata><groupId>com.example</groupId><artifactId>artifact</artifactId><versioning>"
+                        + "<latest>1.1</latest><release>1.1</release><lastUpdated>20240101000000</lastUpdated>"
+                        + "<versions><version>1.0</version><version>1.1</version></versions></versioning></metadata>");
+
+        assertThat(versions("com.missing", "artifact")).isEmpty();
+        assertThat(versions("com.missing", "artifact")).isEmpty();
+        assertThat(requests).containsExactly("/com/missing/artifact/maven-metadata.xml");
+
+        listFolders("com.example");
+        assertThat(versions("com.example", "artifact"))
+                .as("because repositories that do not list folders still serve the metadata in them")
+                .containsExactly(DependencyVersion.of("1.0", false), DependencyVersion.of("1.1", true));
+    }
+
+    @Test
+    void test_versions_are_reused_until_expired_or_invalidated() {
+        pages.put("/com/example/artifact/maven-metadata.xml", metadata("1.0", "1.1"));
+        String url = "/com/example/artifact/maven-metadata.xml";
+
+        assertThat(versions("com.example", "artifact")).hasSize(2);
+        assertThat(versions("com.example", "artifact")).hasSize(2);
+        assertThat(requests).containsExactly(url);
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertThat(versions("com.example", "artifact")).hasSize(2);
+        assertThat(requests).as("because versions are only reused for a while").containsExactly(url, url);
+
+        pages.put(url, metadata("1.0", "1.1", "1.2"));
+        explorer.invalidateVersions(DependencyGroup.fromString("com.other"), DependencyName.of("artifact"));
+        assertThat(versions("com.example", "artifact")).hasSize(2);
+        explorer.invalidateVersions(DependencyGroup.fromString("com.example"), DependencyName.of("artifact"));
+        assertThat(versions("com.example", "artifact"))
+                .as("because invalidating a dependency fetches its versions again")
+                .contains(DependencyVersion.of("1.2", true));
+
+        explorer.invalidateVersions();
+        versions("com.example", "artifact");
+        assertThat(requests).containsExactly(url, url, url, url);
+    }
+
+    @Test
+    void test_versions_are_reused_for_the_time_configured_when_cached() {
+        pages.put("/com/example/artifact/maven-metadata.xml", metadata("1.0", "1.1"));
+        String url = "/com/example/artifact/maven-metadata.xml";
+
+        versionCacheTtl.set(Duration.ofMinutes(1));
+        versions("com.example", "artifact");
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        versions("com.example", "artifact");
+        assertThat(requests)
+                .as("because a shorter time applies without creating the explorer again")
+                .containsExactly(url, url);
+
+        versionCacheTtl.set(Duration.ofMinutes(10));
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        versions("com.example", "artifact");
+        nanos.addAndGet(Duration.ofMinutes(5).toNanos());
+        versions("com.example", "artifact");
+        assertThat(requests)
+                .as("because a longer time applies to the versions cached after it was set")
+                .containsExactly(url, url, url);
+    }
+
+    private Set<GroupPartOrPackageName> listFolders(String group) {
+        return explorer.getGroupPartOrPackageName(DependencyGroup.fromString(group), repository());
+    }
+
+    private Set<DependencyVersion> versions(String group, String artifact) {
+        return explorer.getVersions(DependencyGroup.fromString(group), DependencyName.of(artifact), repository());
+    }
+
+    private static String metadata(String... versions) {
+        String latest = versions[versions.length - 1];
+        StringBuilder xml =
+                new StringBuilder("<metadata><groupId>com.example</groupId><artifactId>artifact</artifactId>"
+                        + "<versioning><latest>" + latest + "</latest><release>" + latest + "</release>"
+                        + "<lastUpdated>20240101000000</lastUpdated><versions>");
+        for (String version : versions) {
+            xml.append("<version>").append(version).append("</version>");
+        }
+        return xml.append("</versions></versioning></metadata>").toString();
+    }
+
+    private String repository() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requests.add(path);
+        String page = pages.get(path);
+        if (page == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = page.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase5;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs in a light fixture, like the other tests that need the IDE, for the application pool the queries run on and the
+ * progress manager that cancels them.
+ */
+public class RepositoryFanOutTest extends LightJavaCodeInsightFixtureTestCase5 {
+    private static final Duration NO_DEADLINE = Duration.ofMinutes(1);
+
+    @Override
+    protected final String getRelativePath() {
+        return "";
+    }
+
+    @Override
+    protected final String getTestDataPath() {
+        return "";
+    }
+
+    @Test
+    public void test_handles_results_in_the_order_repositories_answer() {
+        CountDownLatch fastHandled = new CountDownLatch(1);
+        List<String> handled = new ArrayList<>();
+
+        RepositoryFanOut.forEachResult(
+                List.of("https://slow.one/", "https://fast.two/"),
+                repository -> {
+                    if (repository.contains("slow")) {
+                        // Only answers once the other repository's result was handled, so it never would if the
+                        // repositories were queried one after the other
+                        await(fastHandled, Duration.ofSeconds(5));
+                    }
+                    return repository;
+                },
+                NO_DEADLINE,
+                result -> {
+                    handled.add(result);
+                    fastHandled.countDown();
+                    return true;
+                });
+
+        assertThat(handled).containsExactly("https://fast.two/", "https://slow.one/");
+    }
+
+    @Test
+    public void test_leaves_out_repositories_that_miss_the_deadline() {
+        CountDownLatch never = new CountDownLatch(1);
+        List<String> handled = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try {
+            RepositoryFanOut.forEachResult(
+                    List.of("https://hanging.one/", "https://fast.two/"),
+                    repository -> {
+                        if (repository.contains("hanging")) {
+                            await(never, Duration.ofSeconds(30));
+                        }
+                        return repository;
+                    },
+                    Duration.ofMillis(200),
+                    handled::add);
+        } finally {
+            never.countDown();
+        }
+
+        assertThat(handled).containsExactly("https://fast.two/");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void test_stops_once_the_handler_needs_no_more_results() {
+        List<String> handled = new ArrayList<>();
+
+        RepositoryFanOut.forEachResult(
+                List.of("https://example.one/", "https://example.two/", "https://example.three/"),
+                repository -> repository,
+                NO_DEADLINE,
+                result -> {
+                    handled.add(result);
+                    return false;
+                });
+
+        assertThat(handled).hasSize(1);
+    }
+
+    @Test
+    public void test_failed_repositories_are_skipped() {
+        List<String> handled = new ArrayList<>();
+
+        RepositoryFanOut.forEachResult(
+                List.of("https://broken.one/", "https://example.two/"),
+                repository -> {
+                    if (repository.contains("broken")) {
+                        throw new IllegalStateException("Connection reset");
+                    }
+                    return repository;
+                },
+                NO_DEADLINE,
+                handled::add);
+
+        assertThat(handled).containsExactly("https://example.two/");
+    }
+
+    @Test
+    public void test_leaves_the_completion_indicator_running() {
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        indicator.start();
+        List<String> handled = new ArrayList<>();
+
+        ProgressManager.getInstance()
+                .executeProcessUnderProgress(
+                        () -> RepositoryFanOut.forEachResult(
+                                List.of("https://example.one/", "https://example.two/", "https://example.three/"),
+                                repository -> repository,
+                                NO_DEADLINE,
+                                result -> {
+                                    // The completion drops results added once its indicator has stopped
+                                    if (indicator.isRunning()) {
+                                        handled.add(result);
+                                    }
+                                    return true;
+                                }),
+                        indicator);
+
+        assertThat(handled)
+                .containsExactlyInAnyOrder("https://example.one/", "https://example.two/", "https://example.three/");
+        assertThat(indicator.isRunning()).isTrue();
+    }
+
+    @Test
+    public void test_stops_waiting_when_the_completion_is_cancelled() {
+        CountDownLatch never = new CountDownLatch(1);
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        indicator.cancel();
+
+        try {
+            assertThatThrownBy(() -> ProgressManager.getInstance()
+                            .runProcess(
+                                    () -> RepositoryFanOut.forEachResult(
+                                            List.of("https://hanging.one/"),
+                                            repository -> await(never, Duration.ofSeconds(30)),
+                                            NO_DEADLINE,
+                                            result -> true),
+                                    indicator))
+                    .isInstanceOf(ProcessCanceledException.class);
+        } finally {
+            never.countDown();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch, Duration timeout) {
+        try {
+            return latch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
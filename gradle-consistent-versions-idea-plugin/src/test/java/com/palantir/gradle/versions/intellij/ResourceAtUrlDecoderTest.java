@@ -0,0 +1,141 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.palantir.gradle.versions.intellij.ResourceAtUrlDecoder.UnknownLayoutException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The fixtures are real {@code resource-at-url.bin} files, written by Gradle 9.1 while resolving against a local
+ * https repository and a plain http one. The build resolved a dynamic version through its {@code maven-metadata.xml},
+ * a component published with Gradle module metadata, an artifact only the http repository has, and a dynamic version
+ * without any {@code maven-metadata.xml}. The grown copy is the same file after a second build also resolved
+ * {@code com.example:demo:1.0}.
+ */
+class ResourceAtUrlDecoderTest {
+    private static final Path FIXTURES = Paths.get("src/test/resources/resourceAtUrl/");
+    private static final Path GRADLE_9_1 = FIXTURES.resolve("gradle-9.1/metadata-2.107/resource-at-url.bin");
+    private static final Path GRADLE_9_1_GROWN =
+            FIXTURES.resolve("gradle-9.1-grown/metadata-2.107/resource-at-url.bin");
+
+    private static final String REPO = "https://localhost:8443/";
+    private static final Set<String> GRADLE_9_1_URLS = Set.of(
+            REPO + "com/example/demo/1.1/demo-1.1.pom",
+            REPO + "com/example/demo/1.1/demo-1.1.jar",
+            REPO + "org/sample/tool/2.0/tool-2.0.pom",
+            REPO + "org/sample/tool/2.0/tool-2.0.jar",
+            REPO + "org/sample/modular/3.0/modular-3.0.pom",
+            REPO + "org/sample/modular/3.0/modular-3.0.jar");
+
+    @Test
+    void test_decodes_gradle_9_1_fixture() throws IOException {
+        Set<String> urls = new HashSet<>();
+        long resumeOffset = ResourceAtUrlDecoder.decodeResourceUrls(GRADLE_9_1, 0, urls::add, () -> {});
+
+        assertThat(ResourceAtUrlDecoder.supports(GRADLE_9_1)).isTrue();
+        assertThat(urls).containsExactlyInAnyOrderElementsOf(GRADLE_9_1_URLS);
+        assertThat(resumeOffset).isEqualTo(Files.size(GRADLE_9_1));
+    }
+
+    @Test
+    void test_leaves_out_resources_that_are_not_poms_or_jars() throws IOException {
+        Set<String> strings = new HashSet<>();
+        BinFileScanner.scanStrings(GRADLE_9_1, strings::add, () -> {});
+        Set<String> urls = new HashSet<>();
+        ResourceAtUrlDecoder.decodeResourceUrls(GRADLE_9_1, 0, urls::add, () -> {});
+
+        assertThat(strings)
+                .as("because Gradle records these resources too")
+                .anyMatch(string -> string.endsWith(REPO + "com/example/demo/maven-metadata.xml"))
+                .anyMatch(string -> string.endsWith(REPO + "org/sample/modular/3.0/modular-3.0.module"))
+                .anyMatch(string -> string.endsWith("http://localhost:8080/org/plain/old/0.9/old-0.9.jar"));
+        assertThat(urls)
+                .as("because only poms and jars downloaded over https name an artifact, as in the heuristic scan")
+                .allMatch(BinFileScanner::isResourceUrl)
+                .noneMatch(url -> url.contains("maven-metadata") || url.endsWith(".module"));
+    }
+
+    @Test
+    void test_resumes_from_the_block_still_being_written(@TempDir Path cacheDir) throws IOException {
+        Path binFile =
+                Files.createDirectories(cacheDir.resolve("metadata-2.107")).resolve("resource-at-url.bin");
+        Files.copy(GRADLE_9_1, binFile);
+        long resumeOffset = ResourceAtUrlDecoder.decodeResourceUrls(binFile, 0, url -> {}, () -> {});
+
+        byte[] grown = Files.readAllBytes(GRADLE_9_1_GROWN);
+        Files.write(binFile, Arrays.copyOf(grown, grown.length - 3));
+        Set<String> urls = new HashSet<>();
+
+        assertThat(ResourceAtUrlDecoder.decodeResourceUrls(binFile, resumeOffset, urls::add, () -> {}))
+                .as("because the last block is only partly written")
+                .isLessThan(grown.length);
+
+        Files.write(binFile, grown);
+        urls.clear();
+        ResourceAtUrlDecoder.decodeResourceUrls(binFile, resumeOffset, urls::add, () -> {});
+
+        assertThat(urls)
+                .as("because Gradle appends the records of a later build")
+                .containsOnly(REPO + "com/example/demo/1.0/demo-1.0.pom", REPO + "com/example/demo/1.0/demo-1.0.jar");
+    }
+
+    @Test
+    void test_falls_back_to_scanning_unknown_layouts(@TempDir Path cacheDir) throws IOException {
+        Path unknownVersion =
+                Files.createDirectories(cacheDir.resolve("metadata-2.200")).resolve("resource-at-url.bin");
+        Files.copy(GRADLE_9_1, unknownVersion);
+        Path corrupted =
+                Files.createDirectories(cacheDir.resolve("metadata-2.107")).resolve("resource-at-url.bin");
+        byte[] contents = Files.readAllBytes(GRADLE_9_1);
+        // The type of the first block
+        contents[0] = 0x12;
+        Files.write(corrupted, contents);
+
+        assertThat(ResourceAtUrlDecoder.supports(unknownVersion)).isFalse();
+        assertThatThrownBy(() -> ResourceAtUrlDecoder.decodeResourceUrls(corrupted, 0, url -> {}, () -> {}))
+                .isInstanceOf(UnknownLayoutException.class);
+
+        Map<Path, Set<String>> urls = new ConcurrentHashMap<>();
+        Map<Path, Long> resumeOffsets = GradleCacheExplorer.extractResourceUrlsInParallel(
+                ForkJoinPool.commonPool(),
+                Map.of(unknownVersion, 0L, corrupted, 0L),
+                1 << 20,
+                (binFile, url) -> urls.computeIfAbsent(binFile, key -> ConcurrentHashMap.newKeySet())
+                        .add(url),
+                () -> {});
+
+        assertThat(urls)
+                .as("because both files are scanned for URLs instead")
+                .containsOnlyKeys(unknownVersion, corrupted)
+                .allSatisfy((binFile, binFileUrls) -> assertThat(binFileUrls).isEqualTo(GRADLE_9_1_URLS));
+        assertThat(resumeOffsets).containsOnlyKeys(unknownVersion, corrupted);
+    }
+}
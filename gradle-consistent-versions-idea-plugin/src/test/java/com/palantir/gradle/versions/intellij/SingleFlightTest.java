@@ -0,0 +1,194 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.versions.intellij;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+    private static final String URL = "https://example.one/com/example/artifact/maven-metadata.xml";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // Set by a test to cancel every caller still waiting, as cancelling their completions would
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final SingleFlight<String, String> requests = new SingleFlight<>(() -> {
+        if (cancelled.get()) {
+            throw new ProcessCanceledException();
+        }
+    });
+
+    @AfterEach
+    void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void test_concurrent_callers_share_one_load() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<String> leader = executor.submit(() -> requests.get(URL, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "metadata";
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(executor.submit(() -> requests.get(URL, () -> {
+                loads.incrementAndGet();
+                return "another request";
+            })));
+        }
+        waitUntilMerged(3);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("metadata");
+        for (Future<String> follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("metadata");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(requests.requests()).isEqualTo(4);
+        assertThat(requests.merged()).isEqualTo(3);
+
+        assertThat(requests.get(URL, () -> "reloaded"))
+                .as("because only loads that are still running are shared")
+                .isEqualTo("reloaded");
+    }
+
+    @Test
+    void test_callers_of_a_cancelled_load_load_again() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> requests.get(URL, () -> {
+            loading.countDown();
+            await(release);
+            throw new ProcessCanceledException();
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<String> follower = executor.submit(() -> requests.get(URL, () -> "metadata"));
+        waitUntilMerged(1);
+        release.countDown();
+
+        assertThat(follower.get(5, TimeUnit.SECONDS))
+                .as("because the result of a cancelled load is not shared")
+                .isEqualTo("metadata");
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(ProcessCanceledException.class);
+        assertThat(requests.merged())
+                .as("because the follower loaded the key itself in the end")
+                .isZero();
+    }
+
+    @Test
+    void test_callers_of_a_failed_load_see_the_same_failure() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> requests.get(URL, () -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalArgumentException("Malformed metadata");
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<String> follower = executor.submit(() -> requests.get(URL, () -> "another request"));
+        waitUntilMerged(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Malformed metadata");
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .as("because the failure is shared just like a value")
+                .cause()
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Malformed metadata");
+        assertThat(requests.merged()).isEqualTo(1);
+    }
+
+    @Test
+    void test_waiting_caller_stops_when_its_own_completion_is_cancelled() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // Only waiting callers check for cancellation, so the load itself keeps running
+            executor.submit(() -> requests.get(URL, () -> {
+                loading.countDown();
+                await(release);
+                return "metadata";
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<String> follower = executor.submit(() -> requests.get(URL, () -> "another request"));
+            waitUntilMerged(1);
+            cancelled.set(true);
+
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ProcessCanceledException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void test_different_keys_are_loaded_separately() {
+        CompletableFuture<String> other = new CompletableFuture<>();
+
+        String value = requests.get(URL, () -> {
+            other.complete(requests.get(URL + ".sha1", () -> "checksum"));
+            return "metadata";
+        });
+
+        assertThat(value).isEqualTo("metadata");
+        assertThat(other).isCompletedWithValue("checksum");
+        assertThat(requests.merged()).isZero();
+    }
+
+    private void waitUntilMerged(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requests.merged() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(requests.merged()).isEqualTo(count);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}